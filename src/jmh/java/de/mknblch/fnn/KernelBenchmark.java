@@ -0,0 +1,72 @@
+package de.mknblch.fnn;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * dot product kernels with four accumulators against the
+ * plain single accumulator loop they replaced
+ *
+ * @author mknblch
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KernelBenchmark {
+
+    @Param({"16", "128", "1024"})
+    public int length;
+
+    private double[] x;
+    private double[] y;
+    private float[] xf;
+    private float[] yf;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(42L);
+        x = new double[length];
+        y = new double[length];
+        xf = new float[length];
+        yf = new float[length];
+        for (int i = 0; i < length; i++) {
+            x[i] = random.nextDouble();
+            y[i] = random.nextDouble();
+            xf[i] = (float) x[i];
+            yf[i] = (float) y[i];
+        }
+    }
+
+    @Benchmark
+    public double dot() {
+        return Kernels.dot(x, 0, y, 0, length);
+    }
+
+    @Benchmark
+    public double dotSingleAccumulator() {
+        double t = 0.0;
+        for (int i = 0; i < length; i++) {
+            t += x[i] * y[i];
+        }
+        return t;
+    }
+
+    @Benchmark
+    public float dotFloat() {
+        return Kernels.dot(xf, 0, yf, 0, length);
+    }
+
+    @Benchmark
+    public float dotFloatSingleAccumulator() {
+        float t = 0.0f;
+        for (int i = 0; i < length; i++) {
+            t += xf[i] * yf[i];
+        }
+        return t;
+    }
+}
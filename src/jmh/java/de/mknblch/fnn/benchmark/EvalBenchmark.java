@@ -0,0 +1,80 @@
+package de.mknblch.fnn.benchmark;
+
+import de.mknblch.fnn.CompiledModel;
+import de.mknblch.fnn.Model;
+import de.mknblch.fnn.Trainer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * single and batched evaluation at different layer sizes and depths
+ *
+ * @author mknblch
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvalBenchmark {
+
+    // number of rows per batch
+    private static final int ROWS = 256;
+
+    @Param({"2", "16", "128", "512"})
+    public int size;
+
+    @Param({"1", "3"})
+    public int depth;
+
+    private Trainer network;
+    private Model model;
+    private CompiledModel compiled;
+    private double[] input;
+    private double[] output;
+    private double[] batch;
+    private double[] batchOutput;
+
+    @Setup
+    public void setup() {
+        network = Networks.builder(size, depth).build(Networks.SEED);
+        model = network.toModel();
+        compiled = CompiledModel.of(model);
+        final double[][] rows = Networks.random(ROWS, size);
+        input = rows[0];
+        output = new double[size];
+        batch = new double[ROWS * size];
+        for (int r = 0; r < ROWS; r++) {
+            System.arraycopy(rows[r], 0, batch, r * size, size);
+        }
+        batchOutput = new double[ROWS * size];
+    }
+
+    @Benchmark
+    public double[] evalSequential() {
+        return network.eval(input, false);
+    }
+
+    @Benchmark
+    public double[] evalParallel() {
+        return network.eval(input, true);
+    }
+
+    @Benchmark
+    public double[] modelEval() {
+        return model.eval(input, output);
+    }
+
+    @Benchmark
+    public double[] compiledEval() {
+        return compiled.eval(input, output);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public double[] modelEvalBatch() {
+        return model.eval(batch, ROWS, batchOutput);
+    }
+}
@@ -0,0 +1,49 @@
+package de.mknblch.fnn.benchmark;
+
+import de.mknblch.fnn.Trainer;
+
+import java.util.Random;
+
+/**
+ * helper to create benchmark networks and data
+ *
+ * @author mknblch
+ */
+final class Networks {
+
+    static final long SEED = 42L;
+
+    private Networks() {
+    }
+
+    /**
+     * build a network with equally sized input, hidden and output layers
+     * @param size number of units per layer
+     * @param depth number of hidden layers
+     * @return a randomly initialized trainer
+     */
+    static Trainer.Builder builder(int size, int depth) {
+        final Trainer.Builder builder = Trainer.builder(size, size);
+        for (int i = 0; i < depth; i++) {
+            builder.addHiddenLayer(size);
+        }
+        return builder;
+    }
+
+    /**
+     * create uniformly distributed rows in [0, 1)
+     * @param rows number of rows
+     * @param size number of values per row
+     * @return the rows
+     */
+    static double[][] random(int rows, int size) {
+        final Random random = new Random(SEED);
+        final double[][] data = new double[rows][size];
+        for (double[] row : data) {
+            for (int i = 0; i < size; i++) {
+                row[i] = random.nextDouble();
+            }
+        }
+        return data;
+    }
+}
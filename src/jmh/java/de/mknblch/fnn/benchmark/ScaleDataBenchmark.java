@@ -0,0 +1,42 @@
+package de.mknblch.fnn.benchmark;
+
+import de.mknblch.fnn.ScaleData;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * scaling of arrays of different lengths
+ *
+ * @author mknblch
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScaleDataBenchmark {
+
+    @Param({"1024", "1048576"})
+    public int length;
+
+    private double[] data;
+    private double[] out;
+
+    @Setup
+    public void setup() {
+        data = Networks.random(1, length)[0];
+        out = new double[length];
+    }
+
+    @Benchmark
+    public double[] scale() {
+        return ScaleData.scale(data, out, -1.0, 1.0);
+    }
+
+    @Benchmark
+    public double[] scaleToNew() {
+        return ScaleData.scaleToNew(data, -1.0, 1.0);
+    }
+}
@@ -0,0 +1,87 @@
+package de.mknblch.fnn.benchmark;
+
+import de.mknblch.fnn.Regularization;
+import de.mknblch.fnn.Trainer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * training steps per sample and per epoch
+ *
+ * @author mknblch
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrainerBenchmark {
+
+    // number of samples per epoch
+    private static final int SAMPLES = 256;
+
+    @Param({"16", "128"})
+    public int size;
+
+    @Param({"1", "3"})
+    public int depth;
+
+    @Param({"1", "32"})
+    public int batchSize;
+
+    // clip scales every update down, clipIdle only checks the norm
+    @Param({"none", "dropout", "decay", "clip", "clipIdle"})
+    public String regularization;
+
+    private Trainer trainer;
+    private double[][] inputs;
+    private double[][] expected;
+
+    @Setup
+    public void setup() {
+        trainer = Networks.builder(size, depth)
+                .withLearningRate(0.01)
+                .withBatchSize(batchSize)
+                .withRegularization(regularization())
+                .build(Networks.SEED);
+        inputs = Networks.random(SAMPLES, size);
+        expected = Networks.random(SAMPLES, size);
+    }
+
+    private Regularization regularization() {
+        switch (regularization) {
+            case "dropout":
+                return Regularization.none().withDropout(0.2);
+            case "decay":
+                return Regularization.none().withWeightDecay(1e-4);
+            case "clip":
+                return Regularization.none().withGradientClipping(1.0);
+            case "clipIdle":
+                return Regularization.none().withGradientClipping(1e9);
+            default:
+                return Regularization.none();
+        }
+    }
+
+    @Benchmark
+    public double trainSampleSequential() {
+        return trainer.train(inputs[0], expected[0], false);
+    }
+
+    @Benchmark
+    public double trainSampleParallel() {
+        return trainer.train(inputs[0], expected[0], true);
+    }
+
+    @Benchmark
+    public double trainEpochSequential() {
+        return trainer.train(inputs, expected, false);
+    }
+
+    @Benchmark
+    public double trainEpochParallel() {
+        return trainer.train(inputs, expected, true);
+    }
+}
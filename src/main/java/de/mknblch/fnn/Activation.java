@@ -0,0 +1,315 @@
+package de.mknblch.fnn;
+
+/**
+ * activation functions of a layer with their derivatives. both are applied to
+ * a whole array of values at once, so the per-unit loops stay monomorphic.
+ * the constants are persisted by their ordinal in a {@link ModelFile},
+ * so new ones must only be appended.
+ *
+ * @author mknblch
+ */
+public enum Activation {
+
+    /**
+     * f(x) = x
+     */
+    IDENTITY {
+        @Override
+        public void apply(double[] values, int offset, int length) {
+        }
+
+        @Override
+        public void apply(float[] values, int offset, int length) {
+        }
+
+        @Override
+        public void derivative(double[] values, double[] delta, int length) {
+        }
+
+        @Override
+        public void derivative(float[] values, float[] delta, int length) {
+        }
+    },
+
+    /**
+     * f(x) = 1 / (1 + e^-x)
+     */
+    SIGMOID {
+        @Override
+        public void apply(double[] values, int offset, int length) {
+            final int end = offset + length;
+            for (int i = offset; i < end; i++) {
+                values[i] = 1.0 / (1.0 + Math.exp(-values[i]));
+            }
+        }
+
+        @Override
+        public void apply(float[] values, int offset, int length) {
+            final int end = offset + length;
+            for (int i = offset; i < end; i++) {
+                values[i] = (float) (1.0 / (1.0 + Math.exp(-values[i])));
+            }
+        }
+
+        @Override
+        public void derivative(double[] values, double[] delta, int length) {
+            for (int i = 0; i < length; i++) {
+                delta[i] *= values[i] * (1.0 - values[i]);
+            }
+        }
+
+        @Override
+        public void derivative(float[] values, float[] delta, int length) {
+            for (int i = 0; i < length; i++) {
+                delta[i] *= values[i] * (1.0f - values[i]);
+            }
+        }
+    },
+
+    /**
+     * sigmoid approximation without exponential, f(x) = x / (2 * (1 + |x|)) + 0.5
+     */
+    FAST_SIGMOID {
+        @Override
+        public void apply(double[] values, int offset, int length) {
+            final int end = offset + length;
+            for (int i = offset; i < end; i++) {
+                final double x = values[i];
+                values[i] = 0.5 * x / (1.0 + Math.abs(x)) + 0.5;
+            }
+        }
+
+        @Override
+        public void apply(float[] values, int offset, int length) {
+            final int end = offset + length;
+            for (int i = offset; i < end; i++) {
+                final float x = values[i];
+                values[i] = 0.5f * x / (1.0f + Math.abs(x)) + 0.5f;
+            }
+        }
+
+        @Override
+        public void derivative(double[] values, double[] delta, int length) {
+            for (int i = 0; i < length; i++) {
+                final double t = 1.0 - Math.abs(2.0 * values[i] - 1.0);
+                delta[i] *= 0.5 * t * t;
+            }
+        }
+
+        @Override
+        public void derivative(float[] values, float[] delta, int length) {
+            for (int i = 0; i < length; i++) {
+                final float t = 1.0f - Math.abs(2.0f * values[i] - 1.0f);
+                delta[i] *= 0.5f * t * t;
+            }
+        }
+    },
+
+    /**
+     * f(x) = tanh(x)
+     */
+    TANH {
+        @Override
+        public void apply(double[] values, int offset, int length) {
+            final int end = offset + length;
+            for (int i = offset; i < end; i++) {
+                values[i] = Math.tanh(values[i]);
+            }
+        }
+
+        @Override
+        public void apply(float[] values, int offset, int length) {
+            final int end = offset + length;
+            for (int i = offset; i < end; i++) {
+                values[i] = (float) Math.tanh(values[i]);
+            }
+        }
+
+        @Override
+        public void derivative(double[] values, double[] delta, int length) {
+            for (int i = 0; i < length; i++) {
+                delta[i] *= 1.0 - values[i] * values[i];
+            }
+        }
+
+        @Override
+        public void derivative(float[] values, float[] delta, int length) {
+            for (int i = 0; i < length; i++) {
+                delta[i] *= 1.0f - values[i] * values[i];
+            }
+        }
+    },
+
+    /**
+     * f(x) = max(0, x)
+     */
+    RELU {
+        @Override
+        public void apply(double[] values, int offset, int length) {
+            final int end = offset + length;
+            for (int i = offset; i < end; i++) {
+                values[i] = Math.max(0.0, values[i]);
+            }
+        }
+
+        @Override
+        public void apply(float[] values, int offset, int length) {
+            final int end = offset + length;
+            for (int i = offset; i < end; i++) {
+                values[i] = Math.max(0.0f, values[i]);
+            }
+        }
+
+        @Override
+        public void derivative(double[] values, double[] delta, int length) {
+            for (int i = 0; i < length; i++) {
+                delta[i] = values[i] > 0.0 ? delta[i] : 0.0;
+            }
+        }
+
+        @Override
+        public void derivative(float[] values, float[] delta, int length) {
+            for (int i = 0; i < length; i++) {
+                delta[i] = values[i] > 0.0f ? delta[i] : 0.0f;
+            }
+        }
+    },
+
+    /**
+     * f(x) = x if x &gt; 0, 0.01 * x otherwise
+     */
+    LEAKY_RELU {
+        @Override
+        public void apply(double[] values, int offset, int length) {
+            final int end = offset + length;
+            for (int i = offset; i < end; i++) {
+                final double x = values[i];
+                values[i] = x > 0.0 ? x : LEAKAGE * x;
+            }
+        }
+
+        @Override
+        public void apply(float[] values, int offset, int length) {
+            final int end = offset + length;
+            for (int i = offset; i < end; i++) {
+                final float x = values[i];
+                values[i] = x > 0.0f ? x : (float) LEAKAGE * x;
+            }
+        }
+
+        @Override
+        public void derivative(double[] values, double[] delta, int length) {
+            for (int i = 0; i < length; i++) {
+                delta[i] = values[i] > 0.0 ? delta[i] : LEAKAGE * delta[i];
+            }
+        }
+
+        @Override
+        public void derivative(float[] values, float[] delta, int length) {
+            for (int i = 0; i < length; i++) {
+                delta[i] = values[i] > 0.0f ? delta[i] : (float) LEAKAGE * delta[i];
+            }
+        }
+    },
+
+    /**
+     * f(x)_i = e^x_i / sum(e^x_k), normalizes the whole layer
+     */
+    SOFTMAX {
+        @Override
+        public void apply(double[] values, int offset, int length) {
+            final int end = offset + length;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = offset; i < end; i++) {
+                max = Math.max(max, values[i]);
+            }
+            double sum = 0.0;
+            for (int i = offset; i < end; i++) {
+                values[i] = Math.exp(values[i] - max);
+                sum += values[i];
+            }
+            final double norm = 1.0 / sum;
+            for (int i = offset; i < end; i++) {
+                values[i] *= norm;
+            }
+        }
+
+        @Override
+        public void apply(float[] values, int offset, int length) {
+            final int end = offset + length;
+            float max = Float.NEGATIVE_INFINITY;
+            for (int i = offset; i < end; i++) {
+                max = Math.max(max, values[i]);
+            }
+            double sum = 0.0;
+            for (int i = offset; i < end; i++) {
+                values[i] = (float) Math.exp(values[i] - max);
+                sum += values[i];
+            }
+            final float norm = (float) (1.0 / sum);
+            for (int i = offset; i < end; i++) {
+                values[i] *= norm;
+            }
+        }
+
+        @Override
+        public void derivative(double[] values, double[] delta, int length) {
+            // jacobian of softmax is diag(y) - y * y^T
+            double dot = 0.0;
+            for (int i = 0; i < length; i++) {
+                dot += values[i] * delta[i];
+            }
+            for (int i = 0; i < length; i++) {
+                delta[i] = values[i] * (delta[i] - dot);
+            }
+        }
+
+        @Override
+        public void derivative(float[] values, float[] delta, int length) {
+            float dot = 0.0f;
+            for (int i = 0; i < length; i++) {
+                dot += values[i] * delta[i];
+            }
+            for (int i = 0; i < length; i++) {
+                delta[i] = values[i] * (delta[i] - dot);
+            }
+        }
+    };
+
+    // slope of LEAKY_RELU for negative inputs
+    static final double LEAKAGE = 0.01;
+
+    /**
+     * replace the weighted sums of a layer by their activation in place
+     * @param values array of weighted sums
+     * @param offset offset of the first value of the layer
+     * @param length number of units in the layer
+     */
+    public abstract void apply(double[] values, int offset, int length);
+
+    /**
+     * multiply the given deltas by the derivative of the activation
+     * @param values activated output values of the layer
+     * @param delta deltas with respect to the output values, replaced
+     *              by the deltas with respect to the weighted sums
+     * @param length number of units in the layer
+     */
+    public abstract void derivative(double[] values, double[] delta, int length);
+
+    /**
+     * single precision variant of {@link #apply(double[], int, int)}
+     * @param values array of weighted sums
+     * @param offset offset of the first value of the layer
+     * @param length number of units in the layer
+     */
+    public abstract void apply(float[] values, int offset, int length);
+
+    /**
+     * single precision variant of {@link #derivative(double[], double[], int)}
+     * @param values activated output values of the layer
+     * @param delta deltas with respect to the output values, replaced
+     *              by the deltas with respect to the weighted sums
+     * @param length number of units in the layer
+     */
+    public abstract void derivative(float[] values, float[] delta, int length);
+}
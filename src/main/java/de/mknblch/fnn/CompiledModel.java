@@ -0,0 +1,285 @@
+package de.mknblch.fnn;
+
+/**
+ * Model specialized for its fixed topology. All biases and weights are packed
+ * into a single array with one record of (bias, weights) per unit, the layer
+ * sizes and offsets are final fields, and each layer is compiled into a stage
+ * with a fully unrolled kernel for layers of up to four inputs. The stages are
+ * chained directly, so an evaluation performs no per-layer array lookups and
+ * touches a single contiguous parameter and value array. Intended for small
+ * networks where loop and indirection overhead dominates the arithmetic.
+ *
+ * @author mknblch
+ */
+public final class CompiledModel implements Predictor {
+
+    // largest layer input width with an unrolled kernel
+    static final int MAX_UNROLLED = 4;
+
+    // number of input values
+    private final int inputSize;
+    // number of output values
+    private final int outputSize;
+    // number of hidden values of all layers
+    private final int hiddenSize;
+    // packed per unit records of bias and weights
+    final double[] params;
+    // stage of the first layer
+    private final Stage first;
+    // lazily created buffer for hidden values
+    private final ThreadLocal<double[]> scratch = ThreadLocal.withInitial(this::newScratch);
+
+    private CompiledModel(int[] sizes, Activation[] activations, double[][] bias, double[][] weights) {
+        final int last = sizes.length - 1;
+        int parameters = 0;
+        int hidden = 0;
+        for (int l = 1; l <= last; l++) {
+            parameters += sizes[l] * (sizes[l - 1] + 1);
+            hidden += l == last ? 0 : sizes[l];
+        }
+        inputSize = sizes[0];
+        outputSize = sizes[last];
+        hiddenSize = hidden;
+        params = new double[parameters];
+        // build the chain backwards so every stage knows its successor
+        final int[] paramOffsets = new int[sizes.length];
+        final int[] valueOffsets = new int[sizes.length];
+        for (int l = 2; l <= last; l++) {
+            paramOffsets[l] = paramOffsets[l - 1] + sizes[l - 1] * (sizes[l - 2] + 1);
+            valueOffsets[l] = valueOffsets[l - 1] + sizes[l - 1];
+        }
+        Stage next = null;
+        for (int l = last; l >= 1; l--) {
+            final int inputs = sizes[l - 1];
+            for (int j = 0; j < sizes[l]; j++) {
+                final int p = paramOffsets[l] + j * (inputs + 1);
+                params[p] = bias[l][j];
+                System.arraycopy(weights[l], j * inputs, params, p + 1, inputs);
+            }
+            next = stage(inputs, sizes[l], paramOffsets[l], valueOffsets[l], activations[l], next);
+        }
+        first = next;
+    }
+
+    /**
+     * compile the given model
+     * @param model the model
+     * @return a specialized copy of the model
+     */
+    public static CompiledModel of(Model model) {
+        return new CompiledModel(model.sizes, model.activations, model.bias, model.weights);
+    }
+
+    @Override
+    public int inputSize() {
+        return inputSize;
+    }
+
+    @Override
+    public int outputSize() {
+        return outputSize;
+    }
+
+    @Override
+    public double[] eval(double[] input, double[] output) {
+        first.apply(input, 0, scratch.get(), output, 0);
+        return output;
+    }
+
+    @Override
+    public double[] eval(double[] inputs, int rows, double[] outputs) {
+        final double[] values = scratch.get();
+        for (int r = 0; r < rows; r++) {
+            first.apply(inputs, r * inputSize, values, outputs, r * outputSize);
+        }
+        return outputs;
+    }
+
+    private double[] newScratch() {
+        return new double[hiddenSize];
+    }
+
+    /**
+     * select the kernel for a layer
+     */
+    private Stage stage(int inputs, int units, int param, int offset, Activation activation, Stage next) {
+        switch (inputs) {
+            case 1:
+                return new Dense1(units, param, offset, activation, next);
+            case 2:
+                return new Dense2(units, param, offset, activation, next);
+            case 3:
+                return new Dense3(units, param, offset, activation, next);
+            case 4:
+                return new Dense4(units, param, offset, activation, next);
+            default:
+                return new Dense(inputs, units, param, offset, activation, next);
+        }
+    }
+
+    /**
+     * compiled layer. the last stage writes into the output array,
+     * all others into their region of the hidden values.
+     */
+    private abstract class Stage {
+
+        // number of units in the layer
+        final int units;
+        // offset of the first parameter record of the layer
+        final int param;
+        // offset of the layer in the hidden values
+        final int offset;
+        // the activation of the layer
+        final Activation activation;
+        // the following layer or null for the output layer
+        final Stage next;
+
+        Stage(int units, int param, int offset, Activation activation, Stage next) {
+            this.units = units;
+            this.param = param;
+            this.offset = offset;
+            this.activation = activation;
+            this.next = next;
+        }
+
+        /**
+         * evaluate this and all following layers
+         * @param in array holding the input values of the layer
+         * @param inOffset offset of the first input value
+         * @param values the hidden values
+         * @param output the output array
+         * @param outOffset offset of the first output value
+         */
+        abstract void apply(double[] in, int inOffset, double[] values, double[] output, int outOffset);
+    }
+
+    /**
+     * layer with a single input
+     */
+    private final class Dense1 extends Stage {
+
+        Dense1(int units, int param, int offset, Activation activation, Stage next) {
+            super(units, param, offset, activation, next);
+        }
+
+        @Override
+        void apply(double[] in, int inOffset, double[] values, double[] output, int outOffset) {
+            final double[] out = next == null ? output : values;
+            final int o = next == null ? outOffset : offset;
+            final double x0 = in[inOffset];
+            for (int j = 0, p = param; j < units; j++, p += 2) {
+                out[o + j] = params[p] + params[p + 1] * x0;
+            }
+            activation.apply(out, o, units);
+            if (next != null) {
+                next.apply(out, o, values, output, outOffset);
+            }
+        }
+    }
+
+    /**
+     * layer with two inputs
+     */
+    private final class Dense2 extends Stage {
+
+        Dense2(int units, int param, int offset, Activation activation, Stage next) {
+            super(units, param, offset, activation, next);
+        }
+
+        @Override
+        void apply(double[] in, int inOffset, double[] values, double[] output, int outOffset) {
+            final double[] out = next == null ? output : values;
+            final int o = next == null ? outOffset : offset;
+            final double x0 = in[inOffset];
+            final double x1 = in[inOffset + 1];
+            for (int j = 0, p = param; j < units; j++, p += 3) {
+                out[o + j] = params[p] + params[p + 1] * x0 + params[p + 2] * x1;
+            }
+            activation.apply(out, o, units);
+            if (next != null) {
+                next.apply(out, o, values, output, outOffset);
+            }
+        }
+    }
+
+    /**
+     * layer with three inputs
+     */
+    private final class Dense3 extends Stage {
+
+        Dense3(int units, int param, int offset, Activation activation, Stage next) {
+            super(units, param, offset, activation, next);
+        }
+
+        @Override
+        void apply(double[] in, int inOffset, double[] values, double[] output, int outOffset) {
+            final double[] out = next == null ? output : values;
+            final int o = next == null ? outOffset : offset;
+            final double x0 = in[inOffset];
+            final double x1 = in[inOffset + 1];
+            final double x2 = in[inOffset + 2];
+            for (int j = 0, p = param; j < units; j++, p += 4) {
+                out[o + j] = params[p] + params[p + 1] * x0 + params[p + 2] * x1 + params[p + 3] * x2;
+            }
+            activation.apply(out, o, units);
+            if (next != null) {
+                next.apply(out, o, values, output, outOffset);
+            }
+        }
+    }
+
+    /**
+     * layer with four inputs
+     */
+    private final class Dense4 extends Stage {
+
+        Dense4(int units, int param, int offset, Activation activation, Stage next) {
+            super(units, param, offset, activation, next);
+        }
+
+        @Override
+        void apply(double[] in, int inOffset, double[] values, double[] output, int outOffset) {
+            final double[] out = next == null ? output : values;
+            final int o = next == null ? outOffset : offset;
+            final double x0 = in[inOffset];
+            final double x1 = in[inOffset + 1];
+            final double x2 = in[inOffset + 2];
+            final double x3 = in[inOffset + 3];
+            for (int j = 0, p = param; j < units; j++, p += 5) {
+                out[o + j] = params[p] + params[p + 1] * x0 + params[p + 2] * x1
+                        + params[p + 3] * x2 + params[p + 4] * x3;
+            }
+            activation.apply(out, o, units);
+            if (next != null) {
+                next.apply(out, o, values, output, outOffset);
+            }
+        }
+    }
+
+    /**
+     * layer with more than {@link #MAX_UNROLLED} inputs
+     */
+    private final class Dense extends Stage {
+
+        // number of input values
+        private final int inputs;
+
+        Dense(int inputs, int units, int param, int offset, Activation activation, Stage next) {
+            super(units, param, offset, activation, next);
+            this.inputs = inputs;
+        }
+
+        @Override
+        void apply(double[] in, int inOffset, double[] values, double[] output, int outOffset) {
+            final double[] out = next == null ? output : values;
+            final int o = next == null ? outOffset : offset;
+            for (int j = 0, p = param; j < units; j++, p += inputs + 1) {
+                out[o + j] = params[p] + Kernels.dot(in, inOffset, params, p + 1, inputs);
+            }
+            activation.apply(out, o, units);
+            if (next != null) {
+                next.apply(out, o, values, output, outOffset);
+            }
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package de.mknblch.fnn;
 
 /**
- * basic training data set
+ * basic training data set. implementations either provide the materialized
+ * {@link #inputs()} and {@link #expected()} arrays or a streaming
+ * {@link #cursor()} and must override at least one of them.
  *
  * @author mknblch
  */
@@ -14,16 +16,85 @@ public interface DataSet {
     int size();
 
     /**
-     * get the input values
+     * get the input values. streaming implementations
+     * load all elements into the heap.
      * @return input values
      */
-    double[][] inputs();
+    default double[][] inputs() {
+        final double[][] inputs = new double[size()][];
+        try (Cursor cursor = cursor()) {
+            for (int i = 0; cursor.next(); i++) {
+                inputs[i] = new double[cursor.inputSize()];
+                System.arraycopy(cursor.input(), cursor.inputOffset(), inputs[i], 0, inputs[i].length);
+            }
+        }
+        return inputs;
+    }
 
     /**
-     * get output values
+     * get output values. streaming implementations
+     * load all elements into the heap.
      * @return output values
      */
-    double[][] expected();
+    default double[][] expected() {
+        final double[][] expected = new double[size()][];
+        try (Cursor cursor = cursor()) {
+            for (int i = 0; cursor.next(); i++) {
+                expected[i] = new double[cursor.expectedSize()];
+                System.arraycopy(cursor.expected(), cursor.expectedOffset(), expected[i], 0, expected[i].length);
+            }
+        }
+        return expected;
+    }
+
+    /**
+     * open a new cursor positioned before the first element
+     * @return a new cursor which must be closed after use
+     */
+    default Cursor cursor() {
+        final double[][] inputs = inputs();
+        final double[][] expected = expected();
+        return new Cursor() {
+
+            // index of the current element
+            private int index = -1;
+
+            @Override
+            public boolean next() {
+                return ++index < inputs.length;
+            }
+
+            @Override
+            public int inputSize() {
+                return inputs[index].length;
+            }
+
+            @Override
+            public int expectedSize() {
+                return expected[index].length;
+            }
+
+            @Override
+            public double[] input() {
+                return inputs[index];
+            }
+
+            @Override
+            public int inputOffset() {
+                return 0;
+            }
+
+            @Override
+            public double[] expected() {
+                return expected[index];
+            }
+
+            @Override
+            public int expectedOffset() {
+                return 0;
+            }
+        };
+    }
 
     /**
      * build a DataSet from the given arrays.
@@ -55,4 +126,61 @@ public interface DataSet {
             }
         };
     }
+
+    /**
+     * forward-only iteration over the elements of a data set. the values
+     * of the current element are exposed as a region of a (possibly shared)
+     * primitive buffer which is only valid until the next call to {@link #next()}.
+     */
+    interface Cursor extends AutoCloseable {
+
+        /**
+         * advance to the next element
+         * @return true if there is a current element, false at the end
+         */
+        boolean next();
+
+        /**
+         * number of input values of the current element
+         * @return input values per element
+         */
+        int inputSize();
+
+        /**
+         * number of expected values of the current element
+         * @return expected values per element
+         */
+        int expectedSize();
+
+        /**
+         * buffer holding the input values of the current element
+         * @return the buffer
+         */
+        double[] input();
+
+        /**
+         * offset of the first input value in {@link #input()}
+         * @return the offset
+         */
+        int inputOffset();
+
+        /**
+         * buffer holding the expected values of the current element
+         * @return the buffer
+         */
+        double[] expected();
+
+        /**
+         * offset of the first expected value in {@link #expected()}
+         * @return the offset
+         */
+        int expectedOffset();
+
+        /**
+         * release resources held by the cursor
+         */
+        @Override
+        default void close() {
+        }
+    }
 }
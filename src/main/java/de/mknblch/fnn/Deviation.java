@@ -0,0 +1,96 @@
+package de.mknblch.fnn;
+
+/**
+ * deviation of the outputs of an approximating predictor (e.g. a
+ * {@link QuantizedModel} or {@link FloatModel}) from a reference predictor
+ *
+ * @author mknblch
+ */
+public final class Deviation {
+
+    // largest absolute difference of a single output value
+    private final double maxError;
+    // mean absolute difference of all output values
+    private final double meanError;
+    // fraction of elements whose largest output unit is the same
+    private final double agreement;
+
+    private Deviation(double maxError, double meanError, double agreement) {
+        this.maxError = maxError;
+        this.meanError = meanError;
+        this.agreement = agreement;
+    }
+
+    /**
+     * evaluate both predictors on all input values of the data set and compare them
+     * @param reference the reference predictor
+     * @param candidate the approximating predictor
+     * @param dataSet the data set (only input values are used)
+     * @return the deviation
+     */
+    public static Deviation compare(Predictor reference, Predictor candidate, DataSet dataSet) {
+        final double[] input = new double[reference.inputSize()];
+        final double[] expected = new double[reference.outputSize()];
+        final double[] actual = new double[candidate.outputSize()];
+        double max = 0.0;
+        double sum = 0.0;
+        int agree = 0;
+        int count = 0;
+        try (DataSet.Cursor cursor = dataSet.cursor()) {
+            while (cursor.next()) {
+                System.arraycopy(cursor.input(), cursor.inputOffset(), input, 0, input.length);
+                reference.eval(input, expected);
+                candidate.eval(input, actual);
+                for (int i = 0; i < expected.length; i++) {
+                    final double e = Math.abs(expected[i] - actual[i]);
+                    max = Math.max(max, e);
+                    sum += e;
+                }
+                if (argMax(expected) == argMax(actual)) {
+                    agree++;
+                }
+                count++;
+            }
+        }
+        return new Deviation(max, sum / ((double) count * expected.length), (double) agree / count);
+    }
+
+    /**
+     * largest absolute difference of a single output value
+     * @return the maximum error
+     */
+    public double maxError() {
+        return maxError;
+    }
+
+    /**
+     * mean absolute difference of all output values
+     * @return the mean error
+     */
+    public double meanError() {
+        return meanError;
+    }
+
+    /**
+     * fraction of elements whose largest output unit is the same in both predictors
+     * @return agreement between 0 and 1
+     */
+    public double agreement() {
+        return agreement;
+    }
+
+    @Override
+    public String toString() {
+        return "Deviation{maxError=" + maxError + ", meanError=" + meanError + ", agreement=" + agreement + "}";
+    }
+
+    private static int argMax(double[] values) {
+        int index = 0;
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] > values[index]) {
+                index = i;
+            }
+        }
+        return index;
+    }
+}
@@ -0,0 +1,141 @@
+package de.mknblch.fnn;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Decides whether and how the work of a layer is split across a
+ * {@link ForkJoinPool}. Work is measured in multiply-adds. Layers below the
+ * threshold are computed sequentially by the calling thread, larger ones are
+ * partitioned into blocks of at least threshold multiply-adds, which also
+ * keeps the weights of a block cache-sized (32768 doubles by default).
+ *
+ * @author mknblch
+ */
+public final class ExecutionPolicy {
+
+    // default minimum number of multiply-adds per block
+    static final long DEFAULT_THRESHOLD = 1 << 15;
+
+    // policy which never splits work
+    private static final ExecutionPolicy SEQUENTIAL = new ExecutionPolicy(null, Long.MAX_VALUE);
+
+    // the pool or null if sequential
+    private final ForkJoinPool pool;
+    // minimum number of multiply-adds per block
+    private final long threshold;
+
+    private ExecutionPolicy(ForkJoinPool pool, long threshold) {
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    /**
+     * compute everything in the calling thread
+     * @return the policy
+     */
+    public static ExecutionPolicy sequential() {
+        return SEQUENTIAL;
+    }
+
+    /**
+     * split large layers across the common pool (default)
+     * @return the policy
+     */
+    public static ExecutionPolicy commonPool() {
+        return of(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * split large layers across a dedicated pool
+     * @param pool the pool
+     * @return the policy
+     */
+    public static ExecutionPolicy of(ForkJoinPool pool) {
+        return new ExecutionPolicy(pool, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * derive a policy with another minimum amount of work per block
+     * @param threshold minimum number of multiply-adds per block
+     * @return a new policy
+     */
+    public ExecutionPolicy withThreshold(long threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("Invalid threshold " + threshold);
+        }
+        return pool == null ? this : new ExecutionPolicy(pool, threshold);
+    }
+
+    /**
+     * number of threads work is split across
+     * @return parallelism of the pool or 1 if sequential
+     */
+    public int parallelism() {
+        return pool == null ? 1 : pool.getParallelism();
+    }
+
+    /**
+     * number of blocks to split the given work into
+     * @param work number of multiply-adds
+     * @param maxBlocks upper bound, e.g. the number of independent units
+     * @return number of blocks, 1 to compute sequentially
+     */
+    int blocks(long work, int maxBlocks) {
+        if (pool == null || pool.getParallelism() < 2 || work < 2 * threshold) {
+            return 1;
+        }
+        return (int) Math.max(1, Math.min(maxBlocks, work / threshold));
+    }
+
+    /**
+     * run all blocks and wait for their completion. a single block is run by the calling thread.
+     * @param blocks number of blocks
+     * @param block body receiving the index of the block
+     */
+    void run(int blocks, IntConsumer block) {
+        if (blocks <= 1) {
+            block.accept(0);
+        } else {
+            pool.invoke(new Blocks(block, 0, blocks));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return pool == null ? "ExecutionPolicy{sequential}"
+                : "ExecutionPolicy{parallelism=" + pool.getParallelism() + ", threshold=" + threshold + "}";
+    }
+
+    /**
+     * recursively halves a range of blocks so idle workers can steal them
+     */
+    private static final class Blocks extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        // body receiving the index of the block
+        private final IntConsumer block;
+        // first block (inclusive)
+        private final int from;
+        // last block (exclusive)
+        private final int to;
+
+        private Blocks(IntConsumer block, int from, int to) {
+            this.block = block;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                block.accept(from);
+                return;
+            }
+            final int mid = (from + to) >>> 1;
+            invokeAll(new Blocks(block, from, mid), new Blocks(block, mid, to));
+        }
+    }
+}
@@ -1,9 +1,6 @@
 package de.mknblch.fnn;
 
 import java.util.Arrays;
-import java.util.function.DoubleFunction;
-import java.util.function.DoubleUnaryOperator;
-import java.util.function.IntToDoubleFunction;
 
 /**
  * Feedforward Network
@@ -14,11 +11,8 @@ public class FNN {
 
     // layer array including input and output layers
     final Layer[] layers;
-
-    /**
-     * sigmoid function
-     */
-    DoubleUnaryOperator activationFunction = (x) -> 1.0 / (1.0 + Math.exp(-x));
+    // splits the work of large layers across threads
+    ExecutionPolicy policy = ExecutionPolicy.commonPool();
 
     /**
      * build a network with given (2 or more) layers
@@ -37,19 +31,31 @@ public class FNN {
     }
 
     /**
-     * feed the network with given values
+     * set the policy which splits the work of large layers across threads
+     * (common pool by default)
+     * @param policy the execution policy
+     * @return itself for method chaining
+     */
+    public FNN withExecutionPolicy(ExecutionPolicy policy) {
+        this.policy = policy;
+        return this;
+    }
+
+    /**
+     * feed the network with given values. large layers are split
+     * across threads according to the execution policy.
      * @param input the input values
      * @return output of the network
      */
     public double[] eval(double[] input) {
-        return eval(input, false);
+        return eval(input, true);
     }
 
     /**
      * feed the network with given values
      * @param input the input values
-     * @param parallel use {@link Arrays#parallelSetAll(double[], IntToDoubleFunction)} instead of
-     *                 {@link Arrays#setAll(double[], IntToDoubleFunction)}
+     * @param parallel false to compute sequentially, true to split
+     *                 large layers according to the execution policy
      * @return output of the network
      */
     public double[] eval(double[] input, boolean parallel) {
@@ -60,11 +66,49 @@ public class FNN {
         return layers[layers.length - 1].values;
     }
 
-    public FNN withActivationFunction(DoubleUnaryOperator activationFunction) {
-        this.activationFunction = activationFunction;
+    /**
+     * feed the network with sparse input values. the first layer only
+     * reads the weights of the non-zero inputs.
+     * @param input the sparse input values
+     * @return output of the network
+     */
+    public double[] eval(SparseVector input) {
+        forward(input);
+        for (int i = 2; i < layers.length; i++) {
+            forward(i, false);
+        }
+        return layers[layers.length - 1].values;
+    }
+
+    /**
+     * create an immutable snapshot of the current network state which
+     * can be evaluated concurrently
+     * @return a new model
+     */
+    public Model toModel() {
+        return new Model(layers);
+    }
+
+    /**
+     * set the activation of all hidden and output layers
+     * @param activation the activation
+     * @return itself for method chaining
+     */
+    public FNN withActivation(Activation activation) {
+        for (int i = 1; i < layers.length; i++) {
+            layers[i].activation = activation;
+        }
         return this;
     }
 
+    /**
+     * get activation of the given layer
+     * @return activation of the layer or null for the input layer
+     */
+    public Activation activation(int layer) {
+        return layers[layer].activation;
+    }
+
     /**
      * get current output of the last layer
      * @return output of the layer
@@ -97,36 +141,53 @@ public class FNN {
         return layers[layer].values;
     }
 
+    /**
+     * do eval forward step of the first layer for sparse input values
+     * @param input the sparse input values
+     */
+    void forward(SparseVector input) {
+        if (input.size != layers[1].weights.length / layers[1].values.length) {
+            throw new IllegalArgumentException("Invalid input size " + input.size);
+        }
+        final Layer first = layers[1];
+        Kernels.forward(first.values, input, first.values.length, first.bias, first.weights, first.activation);
+    }
+
     /**
      * do eval forward step for the given layer
      * @param layer the index of the layer
      */
-    private void forward(int layer, boolean parallel) {
-        if (parallel) {
-            parallelForward(layers[layer].values, layers[layer - 1].values, layers[layer].bias, layers[layer].weights);
+    void forward(int layer, boolean parallel) {
+        final double[] precursor = layers[layer - 1].values;
+        final int units = layers[layer].values.length;
+        final int blocks = parallel ? policy.blocks((long) precursor.length * units, units) : 1;
+        if (blocks > 1) {
+            parallelForward(layers[layer], precursor, blocks);
         } else {
-            sequentialForward(layers[layer].values, layers[layer - 1].values, layers[layer].bias, layers[layer].weights);
+            sequentialForward(layers[layer], precursor);
         }
     }
 
-    private void sequentialForward(double[] values, double[] precursor, double[] bias, double[] weights) {
-        Arrays.setAll(values, j -> {
-            double t = bias[j];
-            for (int i = 0; i < precursor.length; i++) {
-                t += precursor[i] * weights[i * values.length + j];
-            }
-            return activationFunction.applyAsDouble(t);
-        });
+    private void sequentialForward(Layer layer, double[] precursor) {
+        Kernels.forward(layer.values, precursor, 0, precursor.length, layer.values.length,
+                layer.bias, layer.weights, layer.activation);
     }
 
-    private void parallelForward(double[] values, double[] precursor, double[] bias, double[] weights) {
-        Arrays.parallelSetAll(values, j -> {
-            double t = bias[j];
-            for (int i = 0; i < precursor.length; i++) {
-                t += precursor[i] * weights[i * values.length + j];
+    /**
+     * compute the weighted sums of blocks of units concurrently
+     * and apply the activation once all of them are complete
+     */
+    private void parallelForward(Layer layer, double[] precursor, int blocks) {
+        final double[] values = layer.values;
+        final double[] bias = layer.bias;
+        final double[] weights = layer.weights;
+        final int units = values.length;
+        policy.run(blocks, b -> {
+            for (int j = units * b / blocks; j < units * (b + 1) / blocks; j++) {
+                values[j] = bias[j] + Kernels.dot(precursor, 0, weights, j * precursor.length, precursor.length);
             }
-            return activationFunction.applyAsDouble(t);
         });
+        layer.activation.apply(values, 0, values.length);
     }
 
 
@@ -137,9 +198,12 @@ public class FNN {
 
         // actual output values
         double[] values;
+        // activation of the layer (null for the input layer)
+        Activation activation;
         // biases (initially set to 1.0)
         final double[] bias;
-        // weight matrix (laid out as sequential array)
+        // weight matrix (laid out neuron-major, weight of input i
+        // to unit j is at j * previousUnits + i)
         final double[] weights;
 
         /**
@@ -156,8 +220,10 @@ public class FNN {
          * Hidden layer ctor
          * @param previousUnits number of output units in the previous layer
          * @param units desired number of units in the layer
+         * @param activation activation of the layer
          */
-        Layer(int previousUnits, int units) {
+        Layer(int previousUnits, int units, Activation activation) {
+            this.activation = activation;
             this.values = new double[units];
             this.bias = new double[units];
             weights = new double[previousUnits * units];
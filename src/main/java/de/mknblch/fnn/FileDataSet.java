@@ -0,0 +1,373 @@
+package de.mknblch.fnn;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * DataSet streamed from a binary file in chunks of rows, so only a
+ * bounded number of elements is held in memory. all values are little endian:
+ *
+ * <pre>
+ *     int      magic ("FDS\0")
+ *     int      version
+ *     long     number of rows
+ *     int      input values per row
+ *     int      expected values per row
+ *     for each row:
+ *     double[] input values
+ *     double[] expected values
+ * </pre>
+ *
+ * @author mknblch
+ */
+public final class FileDataSet implements DataSet {
+
+    // "FDS\0"
+    static final int MAGIC = 0x46445300;
+    // current format version
+    static final int VERSION = 1;
+    // size of the header in bytes
+    static final int HEADER = 24;
+    // default number of rows per chunk
+    static final int DEFAULT_CHUNK_ROWS = 4096;
+
+    // the file
+    private final Path path;
+    // number of rows
+    private final int size;
+    // input values per row
+    private final int inputSize;
+    // expected values per row
+    private final int expectedSize;
+    // number of rows read at once
+    private final int chunkRows;
+
+    private FileDataSet(Path path, int size, int inputSize, int expectedSize, int chunkRows) {
+        this.path = path;
+        this.size = size;
+        this.inputSize = inputSize;
+        this.expectedSize = expectedSize;
+        this.chunkRows = chunkRows;
+    }
+
+    /**
+     * open a data set file with the default chunk size
+     * @param path the file
+     * @return the data set
+     * @throws IOException if the file is not a valid data set
+     */
+    public static FileDataSet open(Path path) throws IOException {
+        return open(path, DEFAULT_CHUNK_ROWS);
+    }
+
+    /**
+     * open a data set file
+     * @param path the file
+     * @param chunkRows number of rows read at once
+     * @return the data set
+     * @throws IOException if the file is not a valid data set
+     */
+    public static FileDataSet open(Path path, int chunkRows) throws IOException {
+        if (chunkRows < 1) {
+            throw new IllegalArgumentException("Invalid chunk size " + chunkRows);
+        }
+        final ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            readFully(channel, header);
+            ((Buffer) header).flip();
+            if (header.remaining() < HEADER || header.getInt() != MAGIC) {
+                throw new IOException("Not a data set file: " + path);
+            }
+            final int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported data set version " + version);
+            }
+            final long rows = header.getLong();
+            final int inputSize = header.getInt();
+            final int expectedSize = header.getInt();
+            if (rows < 0 || rows > Integer.MAX_VALUE || inputSize < 1 || expectedSize < 1) {
+                throw new IOException("Invalid data set header in " + path);
+            }
+            if (chunkRows(1, (long) inputSize + expectedSize) < 1) {
+                throw new IOException("Rows too wide for a chunk in " + path);
+            }
+            if (channel.size() < HEADER + rows * 8L * (inputSize + expectedSize)) {
+                throw new IOException("Truncated data set file: " + path);
+            }
+            return new FileDataSet(path, (int) rows, inputSize, expectedSize, chunkRows);
+        }
+    }
+
+    /**
+     * write the given data set into a file
+     * @param dataSet the data set
+     * @param path the target file (created or truncated)
+     * @throws IOException if writing fails
+     */
+    public static void write(DataSet dataSet, Path path) throws IOException {
+        try (Cursor cursor = dataSet.cursor()) {
+            if (!cursor.next()) {
+                throw new IllegalArgumentException("Empty data set");
+            }
+            try (Writer writer = writer(path, cursor.inputSize(), cursor.expectedSize())) {
+                do {
+                    writer.add(cursor.input(), cursor.inputOffset(), cursor.expected(), cursor.expectedOffset());
+                } while (cursor.next());
+            }
+        }
+    }
+
+    /**
+     * create a writer which appends rows to a new data set file
+     * @param path the target file (created or truncated)
+     * @param inputSize input values per row
+     * @param expectedSize expected values per row
+     * @return the writer
+     * @throws IOException if the file cannot be created
+     */
+    public static Writer writer(Path path, int inputSize, int expectedSize) throws IOException {
+        return new Writer(path, inputSize, expectedSize);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * number of input values per row
+     * @return input values
+     */
+    public int inputSize() {
+        return inputSize;
+    }
+
+    /**
+     * number of expected values per row
+     * @return expected values
+     */
+    public int expectedSize() {
+        return expectedSize;
+    }
+
+    @Override
+    public Cursor cursor() {
+        try {
+            return new ChunkCursor();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * cap the rows of a chunk so that its size in bytes fits into an int
+     * @param rows requested rows
+     * @param rowLength doubles per row
+     * @return rows per chunk, 0 if not even a single row fits
+     */
+    static int chunkRows(int rows, long rowLength) {
+        return (int) Math.min(rows, Integer.MAX_VALUE / (8L * rowLength));
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * cursor reading chunks of rows into a reused buffer
+     */
+    private final class ChunkCursor implements Cursor {
+
+        // doubles per row
+        private final int rowLength = inputSize + expectedSize;
+        // the open file
+        private final FileChannel channel;
+        // heap buffer for the raw chunk, direct buffers per cursor would churn off-heap memory
+        private final ByteBuffer bytes;
+        // decoded chunk
+        private final double[] chunk;
+        // number of rows left in the file
+        private int remaining = size;
+        // number of rows in the current chunk
+        private int rows = 0;
+        // index of the current row in the chunk
+        private int row = -1;
+
+        private ChunkCursor() throws IOException {
+            final int capacity = chunkRows(Math.max(1, Math.min(chunkRows, size)), rowLength);
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            channel.position(HEADER);
+            bytes = ByteBuffer.allocate(capacity * rowLength * 8).order(ByteOrder.LITTLE_ENDIAN);
+            chunk = new double[capacity * rowLength];
+        }
+
+        @Override
+        public boolean next() {
+            if (++row < rows) {
+                return true;
+            }
+            if (remaining == 0) {
+                return false;
+            }
+            rows = Math.min(remaining, chunk.length / rowLength);
+            ((Buffer) bytes).clear();
+            ((Buffer) bytes).limit(rows * rowLength * 8);
+            try {
+                readFully(channel, bytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (bytes.hasRemaining()) {
+                throw new UncheckedIOException(new IOException("Unexpected end of data set file " + path));
+            }
+            ((Buffer) bytes).flip();
+            bytes.asDoubleBuffer().get(chunk, 0, rows * rowLength);
+            remaining -= rows;
+            row = 0;
+            return true;
+        }
+
+        @Override
+        public int inputSize() {
+            return inputSize;
+        }
+
+        @Override
+        public int expectedSize() {
+            return expectedSize;
+        }
+
+        @Override
+        public double[] input() {
+            return chunk;
+        }
+
+        @Override
+        public int inputOffset() {
+            return row * rowLength;
+        }
+
+        @Override
+        public double[] expected() {
+            return chunk;
+        }
+
+        @Override
+        public int expectedOffset() {
+            return row * rowLength + inputSize;
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * appends rows to a data set file. the row count
+     * in the header is written when the writer is closed.
+     */
+    public static final class Writer implements AutoCloseable {
+
+        // input values per row
+        private final int inputSize;
+        // expected values per row
+        private final int expectedSize;
+        // the open file
+        private final FileChannel channel;
+        // buffer for pending rows
+        private final ByteBuffer bytes;
+        // number of rows written
+        private long rows = 0;
+
+        private Writer(Path path, int inputSize, int expectedSize) throws IOException {
+            if (inputSize < 1 || expectedSize < 1) {
+                throw new IllegalArgumentException("Invalid row size " + inputSize + " + " + expectedSize);
+            }
+            final int capacity = chunkRows(DEFAULT_CHUNK_ROWS, (long) inputSize + expectedSize);
+            if (capacity < 1) {
+                throw new IllegalArgumentException("Rows too wide for a chunk: " + inputSize + " + " + expectedSize);
+            }
+            this.inputSize = inputSize;
+            this.expectedSize = expectedSize;
+            channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            bytes = ByteBuffer.allocateDirect(Math.max(HEADER, capacity * (inputSize + expectedSize) * 8))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            writeHeader();
+        }
+
+        /**
+         * append a row
+         * @param input the input values
+         * @param expected the expected values
+         * @return itself for method chaining
+         * @throws IOException if writing fails
+         */
+        public Writer add(double[] input, double[] expected) throws IOException {
+            return add(input, 0, expected, 0);
+        }
+
+        /**
+         * append a row
+         * @param input buffer holding the input values
+         * @param inputOffset offset of the first input value
+         * @param expected buffer holding the expected values
+         * @param expectedOffset offset of the first expected value
+         * @return itself for method chaining
+         * @throws IOException if writing fails
+         */
+        public Writer add(double[] input, int inputOffset, double[] expected, int expectedOffset) throws IOException {
+            if (bytes.remaining() < (inputSize + expectedSize) * 8) {
+                flush();
+            }
+            for (int i = 0; i < inputSize; i++) {
+                bytes.putDouble(input[inputOffset + i]);
+            }
+            for (int i = 0; i < expectedSize; i++) {
+                bytes.putDouble(expected[expectedOffset + i]);
+            }
+            rows++;
+            return this;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+                channel.position(0);
+                writeHeader();
+            } finally {
+                channel.close();
+            }
+        }
+
+        private void writeHeader() throws IOException {
+            ((Buffer) bytes).clear();
+            bytes.putInt(MAGIC).putInt(VERSION).putLong(rows).putInt(inputSize).putInt(expectedSize);
+            flush();
+        }
+
+        private void flush() throws IOException {
+            ((Buffer) bytes).flip();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            ((Buffer) bytes).clear();
+        }
+    }
+}
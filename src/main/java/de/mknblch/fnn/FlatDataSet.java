@@ -0,0 +1,176 @@
+package de.mknblch.fnn;
+
+import java.util.Arrays;
+
+/**
+ * DataSet storing all input values and all expected values row-major in
+ * one contiguous array each. elements are addressed by their row offset,
+ * which avoids an object per element and keeps the values prefetch friendly.
+ *
+ * @author mknblch
+ */
+public final class FlatDataSet implements DataSet {
+
+    // row-major input values
+    private final double[] inputs;
+    // row-major expected values
+    private final double[] expected;
+    // input values per row
+    private final int inputSize;
+    // expected values per row
+    private final int expectedSize;
+    // number of rows
+    private final int size;
+
+    private FlatDataSet(double[] inputs, double[] expected, int inputSize, int expectedSize) {
+        if (inputSize < 1 || expectedSize < 1
+                || inputs.length % inputSize != 0
+                || expected.length % expectedSize != 0
+                || inputs.length / inputSize != expected.length / expectedSize) {
+            throw new IllegalArgumentException("Array sizes do not match the row sizes");
+        }
+        this.inputs = inputs;
+        this.expected = expected;
+        this.inputSize = inputSize;
+        this.expectedSize = expectedSize;
+        this.size = inputs.length / inputSize;
+    }
+
+    /**
+     * build a DataSet on top of the given row-major arrays without copying them
+     * @param inputs row-major input values
+     * @param expected row-major expected values
+     * @param inputSize input values per row
+     * @param expectedSize expected values per row
+     * @return a DataSet
+     */
+    public static FlatDataSet wrap(double[] inputs, double[] expected, int inputSize, int expectedSize) {
+        return new FlatDataSet(inputs, expected, inputSize, expectedSize);
+    }
+
+    /**
+     * copy all elements of the given data set into contiguous arrays
+     * @param dataSet the data set
+     * @return a DataSet
+     */
+    public static FlatDataSet copyOf(DataSet dataSet) {
+        final int size = dataSet.size();
+        double[] inputs = null;
+        double[] expected = null;
+        int inputSize = 0;
+        int expectedSize = 0;
+        try (Cursor cursor = dataSet.cursor()) {
+            for (int row = 0; cursor.next(); row++) {
+                if (inputs == null) {
+                    inputSize = cursor.inputSize();
+                    expectedSize = cursor.expectedSize();
+                    inputs = new double[size * inputSize];
+                    expected = new double[size * expectedSize];
+                }
+                System.arraycopy(cursor.input(), cursor.inputOffset(), inputs, row * inputSize, inputSize);
+                System.arraycopy(cursor.expected(), cursor.expectedOffset(), expected, row * expectedSize, expectedSize);
+            }
+        }
+        if (inputs == null) {
+            throw new IllegalArgumentException("Empty data set");
+        }
+        return new FlatDataSet(inputs, expected, inputSize, expectedSize);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * number of input values per row
+     * @return input values
+     */
+    public int inputSize() {
+        return inputSize;
+    }
+
+    /**
+     * number of expected values per row
+     * @return expected values
+     */
+    public int expectedSize() {
+        return expectedSize;
+    }
+
+    /**
+     * the backing array of all input values (row r starts at r * {@link #inputSize()})
+     * @return row-major input values
+     */
+    public double[] inputBuffer() {
+        return inputs;
+    }
+
+    /**
+     * the backing array of all expected values (row r starts at r * {@link #expectedSize()})
+     * @return row-major expected values
+     */
+    public double[] expectedBuffer() {
+        return expected;
+    }
+
+    /**
+     * copy a range of rows into a new data set
+     * @param from index of the first row (inclusive)
+     * @param to index of the last row (exclusive)
+     * @return a DataSet
+     */
+    public FlatDataSet slice(int from, int to) {
+        if (from < 0 || to > size || from >= to) {
+            throw new IllegalArgumentException("Invalid range [" + from + ", " + to + ")");
+        }
+        return new FlatDataSet(
+                Arrays.copyOfRange(inputs, from * inputSize, to * inputSize),
+                Arrays.copyOfRange(expected, from * expectedSize, to * expectedSize),
+                inputSize, expectedSize);
+    }
+
+    @Override
+    public Cursor cursor() {
+        return new Cursor() {
+
+            // index of the current row
+            private int row = -1;
+
+            @Override
+            public boolean next() {
+                return ++row < size;
+            }
+
+            @Override
+            public int inputSize() {
+                return inputSize;
+            }
+
+            @Override
+            public int expectedSize() {
+                return expectedSize;
+            }
+
+            @Override
+            public double[] input() {
+                return inputs;
+            }
+
+            @Override
+            public int inputOffset() {
+                return row * inputSize;
+            }
+
+            @Override
+            public double[] expected() {
+                return expected;
+            }
+
+            @Override
+            public int expectedOffset() {
+                return row * expectedSize;
+            }
+        };
+    }
+}
@@ -0,0 +1,138 @@
+package de.mknblch.fnn;
+
+/**
+ * Immutable single precision snapshot of a network. Biases, weights and
+ * intermediate values are stored as floats which halves the memory traffic
+ * of an evaluation compared to {@link Model}.
+ *
+ * @author mknblch
+ */
+public final class FloatModel implements Predictor {
+
+    // number of units per layer including input and output layers
+    final int[] sizes;
+    // activations per layer (index 0 is the input layer and unused)
+    final Activation[] activations;
+    // biases per layer (index 0 is the input layer and unused)
+    final float[][] bias;
+    // weights per layer (index 0 is the input layer and unused)
+    final float[][] weights;
+    // lazily created buffers for input, hidden and output values
+    private final ThreadLocal<float[][]> scratch = ThreadLocal.withInitial(this::newScratch);
+
+    FloatModel(int[] sizes, Activation[] activations, float[][] bias, float[][] weights) {
+        this.sizes = sizes;
+        this.activations = activations;
+        this.bias = bias;
+        this.weights = weights;
+    }
+
+    /**
+     * narrow a double precision model
+     * @param model the model
+     * @return a single precision copy of the model
+     */
+    public static FloatModel of(Model model) {
+        final int layers = model.sizes.length;
+        final float[][] bias = new float[layers][];
+        final float[][] weights = new float[layers][];
+        for (int l = 0; l < layers; l++) {
+            bias[l] = toFloat(model.bias[l]);
+            weights[l] = toFloat(model.weights[l]);
+        }
+        return new FloatModel(model.sizes.clone(), model.activations.clone(), bias, weights);
+    }
+
+    /**
+     * widen this model to double precision
+     * @return a double precision copy of the model
+     */
+    public Model toModel() {
+        final int layers = sizes.length;
+        final double[][] bias = new double[layers][];
+        final double[][] weights = new double[layers][];
+        for (int l = 0; l < layers; l++) {
+            bias[l] = toDouble(this.bias[l]);
+            weights[l] = toDouble(this.weights[l]);
+        }
+        return new Model(sizes.clone(), activations.clone(), bias, weights);
+    }
+
+    @Override
+    public int inputSize() {
+        return sizes[0];
+    }
+
+    @Override
+    public int outputSize() {
+        return sizes[sizes.length - 1];
+    }
+
+    /**
+     * number of hidden layers
+     * @return number of hidden layers
+     */
+    public int numLayer() {
+        return sizes.length - 2;
+    }
+
+    @Override
+    public double[] eval(double[] input, double[] output) {
+        final float[][] values = scratch.get();
+        final float[] in = values[0];
+        final float[] out = values[values.length - 1];
+        for (int i = 0; i < in.length; i++) {
+            in[i] = (float) input[i];
+        }
+        eval(in, out, values);
+        for (int i = 0; i < out.length; i++) {
+            output[i] = out[i];
+        }
+        return output;
+    }
+
+    /**
+     * feed the network with given values
+     * @param input the input values
+     * @param output array of at least {@link #outputSize()} elements
+     * @return the output array
+     */
+    public float[] eval(float[] input, float[] output) {
+        return eval(input, output, scratch.get());
+    }
+
+    private float[] eval(float[] input, float[] output, float[][] values) {
+        final int last = sizes.length - 1;
+        float[] precursor = input;
+        for (int l = 1; l <= last; l++) {
+            final float[] out = l == last ? output : values[l];
+            Kernels.forward(out, precursor, 0, sizes[l - 1], sizes[l], bias[l], weights[l], activations[l]);
+            precursor = out;
+        }
+        return output;
+    }
+
+    private float[][] newScratch() {
+        final float[][] values = new float[sizes.length][];
+        for (int i = 0; i < sizes.length; i++) {
+            values[i] = new float[sizes[i]];
+        }
+        return values;
+    }
+
+    static float[] toFloat(double[] values) {
+        final float[] result = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (float) values[i];
+        }
+        return result;
+    }
+
+    static double[] toDouble(float[] values) {
+        final double[] result = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = values[i];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,183 @@
+package de.mknblch.fnn;
+
+/**
+ * Trainable single precision network. Weights, biases, values and deltas
+ * are floats, halving memory traffic per training step compared to {@link Trainer}.
+ * Trains with per-sample gradient descent. Created by {@link Trainer.Builder#buildFloat(long)}.
+ *
+ * @author mknblch
+ */
+public class FloatTrainer {
+
+    // number of units per layer including input and output layers
+    private final int[] sizes;
+    // activations per layer (index 0 is the input layer and unused)
+    private final Activation[] activations;
+    // output values per layer
+    private final float[][] values;
+    // biases per layer
+    private final float[][] bias;
+    // weights per layer
+    private final float[][] weights;
+    // pre-allocated delta array for weight & bias updates
+    private final float[][] delta;
+    // buffer for expected values
+    private final float[] expected;
+    // learning rate
+    private final float rate;
+    // number of iterations the training took
+    private int iterations = -1;
+
+    /**
+     * narrow the given (initialized) layers
+     * @param layers the network layers
+     * @param rate learning rate
+     */
+    FloatTrainer(FNN.Layer[] layers, double rate) {
+        this.rate = (float) rate;
+        sizes = new int[layers.length];
+        activations = new Activation[layers.length];
+        values = new float[layers.length][];
+        bias = new float[layers.length][];
+        weights = new float[layers.length][];
+        delta = new float[layers.length][];
+        for (int l = 0; l < layers.length; l++) {
+            sizes[l] = layers[l].values.length;
+            activations[l] = layers[l].activation;
+            values[l] = new float[sizes[l]];
+            bias[l] = FloatModel.toFloat(layers[l].bias);
+            weights[l] = FloatModel.toFloat(layers[l].weights);
+            delta[l] = new float[sizes[l]];
+        }
+        expected = new float[sizes[layers.length - 1]];
+    }
+
+    /**
+     * get the number of iterations the
+     * training took or -1 if untrained
+     * @return number of iterations
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * feed the network with given values
+     * @param input the input values
+     * @return output of the network
+     */
+    public float[] eval(float[] input) {
+        System.arraycopy(input, 0, values[0], 0, sizes[0]);
+        forward();
+        return values[values.length - 1];
+    }
+
+    /**
+     * create an immutable single precision snapshot of the current network state
+     * @return a new model
+     */
+    public FloatModel toFloatModel() {
+        final float[][] bias = new float[sizes.length][];
+        final float[][] weights = new float[sizes.length][];
+        for (int l = 0; l < sizes.length; l++) {
+            bias[l] = this.bias[l].clone();
+            weights[l] = this.weights[l].clone();
+        }
+        return new FloatModel(sizes.clone(), activations.clone(), bias, weights);
+    }
+
+    /**
+     * create an immutable double precision snapshot of the current network state
+     * @return a new model
+     */
+    public Model toModel() {
+        return toFloatModel().toModel();
+    }
+
+    /**
+     * train the network with the given parameters
+     * @param dataSet the dataSet
+     * @param converge error threshold for convergence
+     * @param maxIterations maximum count of iterations before Exception is thrown
+     * @return itself for method chaining
+     * @throws IllegalStateException if iteration limit exceeds
+     */
+    public FloatTrainer train(DataSet dataSet, double converge, int maxIterations) {
+        for (iterations = 0; iterations < maxIterations; iterations++) {
+            double error = 0;
+            int count = 0;
+            try (DataSet.Cursor cursor = dataSet.cursor()) {
+                while (cursor.next()) {
+                    error += train(cursor.input(), cursor.inputOffset(), cursor.expected(), cursor.expectedOffset());
+                    count++;
+                }
+            }
+            if (error / count <= converge) {
+                return this;
+            }
+        }
+        throw new IllegalStateException("Network did not converge in " + maxIterations + " iterations");
+    }
+
+    /**
+     * do a single training step with the given values
+     * @param input the input values
+     * @param expected expected values
+     * @return error of last layer
+     */
+    public double train(float[] input, float[] expected) {
+        System.arraycopy(input, 0, values[0], 0, sizes[0]);
+        System.arraycopy(expected, 0, this.expected, 0, this.expected.length);
+        return step();
+    }
+
+    /**
+     * narrow a double precision element and do a single training step
+     */
+    private double train(double[] input, int inputOffset, double[] expected, int expectedOffset) {
+        final float[] in = values[0];
+        for (int i = 0; i < in.length; i++) {
+            in[i] = (float) input[inputOffset + i];
+        }
+        for (int i = 0; i < this.expected.length; i++) {
+            this.expected[i] = (float) expected[expectedOffset + i];
+        }
+        return step();
+    }
+
+    /**
+     * forward, backward and update step for the values in the input and expected buffers
+     * @return error of last layer
+     */
+    private double step() {
+        forward();
+        final int last = sizes.length - 1;
+        final float[] out = values[last];
+        double error = 0.0;
+        for (int j = 0; j < out.length; j++) {
+            final float e = out[j] - expected[j];
+            delta[last][j] = e;
+            error += e * e;
+        }
+        activations[last].derivative(out, delta[last], out.length);
+        for (int l = last - 1; l >= 1; l--) {
+            Kernels.backward(delta[l], sizes[l], delta[l + 1], sizes[l + 1], weights[l + 1]);
+            activations[l].derivative(values[l], delta[l], sizes[l]);
+        }
+        for (int l = 1; l <= last; l++) {
+            final int inputs = sizes[l - 1];
+            for (int j = 0; j < sizes[l]; j++) {
+                final float step = rate * delta[l][j];
+                bias[l][j] -= step;
+                Kernels.axpy(-step, values[l - 1], 0, weights[l], j * inputs, inputs);
+            }
+        }
+        return error / 2.0;
+    }
+
+    private void forward() {
+        for (int l = 1; l < sizes.length; l++) {
+            Kernels.forward(values[l], values[l - 1], 0, sizes[l - 1], sizes[l], bias[l], weights[l], activations[l]);
+        }
+    }
+}
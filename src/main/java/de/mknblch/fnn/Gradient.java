@@ -0,0 +1,168 @@
+package de.mknblch.fnn;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * thread confined buffers of a single training worker. accumulates
+ * the gradients of several samples without touching the network state.
+ *
+ * @author mknblch
+ */
+final class Gradient {
+
+    // output values per layer (index 0 is the input layer and unused)
+    final double[][] values;
+    // deltas per layer
+    final double[][] delta;
+    // accumulated bias gradients per layer
+    final double[][] bias;
+    // accumulated weight gradients per layer
+    final double[][] weights;
+    // accumulated error of all samples since the last clear
+    double error;
+    // time spent in forward steps since the last clear (timed accumulation only)
+    long forwardNanos;
+    // time spent in backward steps since the last clear (timed accumulation only)
+    long backwardNanos;
+    // regularization of the trainer
+    private final Regularization regularization;
+    // random generator for dropout masks
+    private final SplittableRandom random;
+    // dropout masks per hidden layer (null without dropout)
+    private final double[][] masks;
+    // unmasked output values per hidden layer (null without dropout)
+    private final double[][] activated;
+
+    Gradient(FNN.Layer[] layers, Regularization regularization, SplittableRandom random) {
+        this.regularization = regularization;
+        this.random = random;
+        this.masks = regularization.dropout > 0.0 ? new double[layers.length][] : null;
+        this.activated = masks != null ? new double[layers.length][] : null;
+        for (int i = 1; masks != null && i < layers.length - 1; i++) {
+            masks[i] = new double[layers[i].values.length];
+            activated[i] = new double[layers[i].values.length];
+        }
+        values = new double[layers.length][];
+        delta = new double[layers.length][];
+        bias = new double[layers.length][];
+        weights = new double[layers.length][];
+        for (int i = 0; i < layers.length; i++) {
+            values[i] = new double[layers[i].values.length];
+            delta[i] = new double[layers[i].values.length];
+            bias[i] = new double[layers[i].bias.length];
+            weights[i] = new double[layers[i].weights.length];
+        }
+    }
+
+    /**
+     * reset accumulated gradients and error
+     */
+    void clear() {
+        for (int i = 1; i < weights.length; i++) {
+            Arrays.fill(bias[i], 0.0);
+            Arrays.fill(weights[i], 0.0);
+        }
+        error = 0.0;
+        forwardNanos = 0L;
+        backwardNanos = 0L;
+    }
+
+    /**
+     * add the accumulated gradients and error of another worker
+     * @param other the other gradient
+     */
+    void add(Gradient other) {
+        for (int i = 1; i < weights.length; i++) {
+            Kernels.axpy(1.0, other.bias[i], 0, bias[i], 0, bias[i].length);
+            Kernels.axpy(1.0, other.weights[i], 0, weights[i], 0, weights[i].length);
+        }
+        error += other.error;
+        forwardNanos += other.forwardNanos;
+        backwardNanos += other.backwardNanos;
+    }
+
+    /**
+     * sum of squares of all accumulated gradients
+     * @return the squared norm
+     */
+    double squaredNorm() {
+        double sum = 0.0;
+        for (int i = 1; i < weights.length; i++) {
+            sum += Kernels.dot(bias[i], 0, bias[i], 0, bias[i].length);
+            sum += Kernels.dot(weights[i], 0, weights[i], 0, weights[i].length);
+        }
+        return sum;
+    }
+
+    /**
+     * evaluate a single sample and add its gradients
+     * @param layers the network layers (read only)
+     * @param input buffer holding the input values
+     * @param inputOffset offset of the first input value
+     * @param expected buffer holding the expected values
+     * @param expectedOffset offset of the first expected value
+     */
+    void accumulate(FNN.Layer[] layers, double[] input, int inputOffset, double[] expected, int expectedOffset) {
+        forward(layers, input, inputOffset);
+        backward(layers, input, inputOffset, expected, expectedOffset);
+    }
+
+    /**
+     * like {@link #accumulate(FNN.Layer[], double[], int, double[], int)} but
+     * adds the time spent in forward and backward steps
+     */
+    void accumulateTimed(FNN.Layer[] layers, double[] input, int inputOffset, double[] expected, int expectedOffset) {
+        final long start = System.nanoTime();
+        forward(layers, input, inputOffset);
+        final long forwarded = System.nanoTime();
+        backward(layers, input, inputOffset, expected, expectedOffset);
+        backwardNanos += System.nanoTime() - forwarded;
+        forwardNanos += forwarded - start;
+    }
+
+    private void forward(FNN.Layer[] layers, double[] input, int inputOffset) {
+        final int last = layers.length - 1;
+        double[] precursor = input;
+        int precursorOffset = inputOffset;
+        for (int l = 1; l <= last; l++) {
+            final FNN.Layer layer = layers[l];
+            Kernels.forward(values[l], precursor, precursorOffset, values[l - 1].length, values[l].length,
+                    layer.bias, layer.weights, layer.activation);
+            if (masks != null && l < last) {
+                regularization.drop(values[l], activated[l], masks[l], random);
+            }
+            precursor = values[l];
+            precursorOffset = 0;
+        }
+    }
+
+    private void backward(FNN.Layer[] layers, double[] input, int inputOffset, double[] expected, int expectedOffset) {
+        final int last = layers.length - 1;
+        final double[] out = values[last];
+        for (int j = 0; j < out.length; j++) {
+            final double e = out[j] - expected[expectedOffset + j];
+            delta[last][j] = e;
+            error += e * e / 2.0;
+        }
+        layers[last].activation.derivative(out, delta[last], out.length);
+        for (int l = last - 1; l >= 1; l--) {
+            Kernels.backward(delta[l], values[l].length, delta[l + 1], values[l + 1].length, layers[l + 1].weights);
+            if (masks != null) {
+                Regularization.derivative(layers[l].activation, activated[l], masks[l], delta[l]);
+            } else {
+                layers[l].activation.derivative(values[l], delta[l], values[l].length);
+            }
+        }
+        for (int l = 1; l <= last; l++) {
+            final double[] p = l == 1 ? input : values[l - 1];
+            final int offset = l == 1 ? inputOffset : 0;
+            final int inputs = values[l - 1].length;
+            final double[] d = delta[l];
+            Kernels.axpy(1.0, d, 0, bias[l], 0, d.length);
+            for (int j = 0; j < d.length; j++) {
+                Kernels.axpy(d[j], p, offset, weights[l], j * inputs, inputs);
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package de.mknblch.fnn;
+
+import java.util.SplittableRandom;
+
+/**
+ * strategy to draw the initial weights of a layer. the builder hands each
+ * call its own {@link SplittableRandom} split off the seed in a fixed order,
+ * so the weights only depend on the seed and the layer sizes, even though
+ * layers and chunks of units are initialized in parallel.
+ *
+ * @author mknblch
+ */
+public interface Initializer {
+
+    /**
+     * fill a region of the weights of a layer
+     * @param weights the weights of the layer
+     * @param offset offset of the first weight
+     * @param length number of weights
+     * @param inputs number of units in the precursor (fan in)
+     * @param units number of units in the layer (fan out)
+     * @param random random number generator for this region
+     */
+    void fill(double[] weights, int offset, int length, int inputs, int units, SplittableRandom random);
+
+    /**
+     * uniformly distributed weights in [-1, 1) (default)
+     * @return the initializer
+     */
+    static Initializer uniform() {
+        return uniform(-1.0, 1.0);
+    }
+
+    /**
+     * uniformly distributed weights
+     * @param min lower bound (inclusive)
+     * @param max upper bound (exclusive)
+     * @return the initializer
+     */
+    static Initializer uniform(double min, double max) {
+        return (weights, offset, length, inputs, units, random) -> {
+            for (int i = offset; i < offset + length; i++) {
+                weights[i] = random.nextDouble(min, max);
+            }
+        };
+    }
+
+    /**
+     * xavier / glorot initialization, uniform in +-sqrt(6 / (inputs + units)).
+     * suited for sigmoid and tanh layers.
+     * @return the initializer
+     */
+    static Initializer xavier() {
+        return (weights, offset, length, inputs, units, random) -> {
+            final double bound = Math.sqrt(6.0 / (inputs + units));
+            uniform(-bound, bound).fill(weights, offset, length, inputs, units, random);
+        };
+    }
+
+    /**
+     * he initialization, uniform in +-sqrt(6 / inputs) which has the variance
+     * 2 / inputs of the normal variant. suited for relu layers.
+     * @return the initializer
+     */
+    static Initializer he() {
+        return (weights, offset, length, inputs, units, random) -> {
+            final double bound = Math.sqrt(6.0 / inputs);
+            uniform(-bound, bound).fill(weights, offset, length, inputs, units, random);
+        };
+    }
+}
@@ -0,0 +1,376 @@
+package de.mknblch.fnn;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ * stateless numeric kernels shared by the network implementations. the loops
+ * are plain counted loops over contiguous memory without index arithmetic.
+ *
+ * @author mknblch
+ */
+final class Kernels {
+
+    // number of input values per tile in batched forward steps
+    static final int TILE_INPUTS = 256;
+    // number of units per tile in batched forward steps
+    static final int TILE_UNITS = 16;
+
+    private Kernels() {
+    }
+
+    /**
+     * forward step of a single layer. weights are laid out neuron-major,
+     * the weights of unit j start at j * inputs.
+     * @param out output array of at least units elements
+     * @param in input array
+     * @param inOffset offset of the first input value
+     * @param inputs number of input values
+     * @param units number of units in the layer
+     * @param bias biases of the layer
+     * @param weights weights of the layer
+     * @param activation the activation of the layer
+     */
+    static void forward(double[] out, double[] in, int inOffset, int inputs, int units,
+                        double[] bias, double[] weights, Activation activation) {
+        for (int j = 0; j < units; j++) {
+            out[j] = bias[j] + dot(in, inOffset, weights, j * inputs, inputs);
+        }
+        activation.apply(out, 0, units);
+    }
+
+    /**
+     * forward step of a single layer reading biases and weights from buffers
+     * @param out output array of at least units elements
+     * @param in input array
+     * @param inputs number of input values
+     * @param units number of units in the layer
+     * @param bias biases of the layer
+     * @param weights neuron-major weights of the layer
+     * @param activation the activation of the layer
+     */
+    static void forward(double[] out, double[] in, int inputs, int units,
+                        DoubleBuffer bias, DoubleBuffer weights, Activation activation) {
+        for (int j = 0; j < units; j++) {
+            out[j] = bias.get(j) + dot(in, weights, j * inputs, inputs);
+        }
+        activation.apply(out, 0, units);
+    }
+
+    /**
+     * forward step of a single layer for a row-major batch of input rows. the
+     * weight matrix is processed in tiles which stay in cache for all rows.
+     * within a tile four rows are processed at once, so every loaded
+     * weight is used four times.
+     * @param out output array of at least rows * units elements
+     * @param outOffset offset of the first output row
+     * @param in input array of at least rows * inputs elements
+     * @param inOffset offset of the first input row
+     * @param rows number of rows in the batch
+     * @param inputs number of input values per row
+     * @param units number of units in the layer
+     * @param bias biases of the layer
+     * @param weights weights of the layer
+     * @param activation the activation of the layer
+     */
+    static void forwardBatch(double[] out, int outOffset, double[] in, int inOffset, int rows, int inputs, int units,
+                             double[] bias, double[] weights, Activation activation) {
+        for (int r = 0; r < rows; r++) {
+            System.arraycopy(bias, 0, out, outOffset + r * units, units);
+        }
+        for (int j0 = 0; j0 < units; j0 += TILE_UNITS) {
+            final int jEnd = Math.min(j0 + TILE_UNITS, units);
+            for (int i0 = 0; i0 < inputs; i0 += TILE_INPUTS) {
+                final int iEnd = Math.min(i0 + TILE_INPUTS, inputs);
+                int r = 0;
+                for (; r + 3 < rows; r += 4) {
+                    final int o = outOffset + r * units;
+                    final int a0 = inOffset + r * inputs;
+                    final int a1 = a0 + inputs;
+                    final int a2 = a1 + inputs;
+                    final int a3 = a2 + inputs;
+                    for (int j = j0; j < jEnd; j++) {
+                        final int w = j * inputs;
+                        double t0 = 0.0, t1 = 0.0, t2 = 0.0, t3 = 0.0;
+                        for (int i = i0; i < iEnd; i++) {
+                            final double v = weights[w + i];
+                            t0 += in[a0 + i] * v;
+                            t1 += in[a1 + i] * v;
+                            t2 += in[a2 + i] * v;
+                            t3 += in[a3 + i] * v;
+                        }
+                        out[o + j] += t0;
+                        out[o + units + j] += t1;
+                        out[o + 2 * units + j] += t2;
+                        out[o + 3 * units + j] += t3;
+                    }
+                }
+                for (; r < rows; r++) {
+                    final int o = outOffset + r * units;
+                    final int a = inOffset + r * inputs;
+                    for (int j = j0; j < jEnd; j++) {
+                        out[o + j] += dot(in, a + i0, weights, j * inputs + i0, iEnd - i0);
+                    }
+                }
+            }
+        }
+        for (int r = 0; r < rows; r++) {
+            activation.apply(out, outOffset + r * units, units);
+        }
+    }
+
+    /**
+     * dot product of two vectors. the JIT may not reorder floating point
+     * additions, so a single accumulator serializes the loop on the latency
+     * of the add. four independent accumulators let consecutive products
+     * overlap, which KernelBenchmark measured about 1.4 times faster for
+     * 1024 doubles and 3 times faster for 1024 floats on JDK 17.
+     * @param x first array
+     * @param xOffset offset of the first element of x
+     * @param y second array
+     * @param yOffset offset of the first element of y
+     * @param length number of elements
+     * @return sum of x[i] * y[i]
+     */
+    static double dot(double[] x, int xOffset, double[] y, int yOffset, int length) {
+        double t0 = 0.0, t1 = 0.0, t2 = 0.0, t3 = 0.0;
+        final int end = length & ~3;
+        for (int i = 0; i < end; i += 4) {
+            final int a = xOffset + i;
+            final int b = yOffset + i;
+            t0 += x[a] * y[b];
+            t1 += x[a + 1] * y[b + 1];
+            t2 += x[a + 2] * y[b + 2];
+            t3 += x[a + 3] * y[b + 3];
+        }
+        for (int i = end; i < length; i++) {
+            t0 += x[xOffset + i] * y[yOffset + i];
+        }
+        return (t0 + t1) + (t2 + t3);
+    }
+
+    /**
+     * dot product of an array and a region of a buffer, summed in the same
+     * order as {@link #dot(double[], int, double[], int, int)}
+     * @param x first array
+     * @param y the buffer
+     * @param yOffset index of the first element of y
+     * @param length number of elements
+     * @return sum of x[i] * y[i]
+     */
+    static double dot(double[] x, DoubleBuffer y, int yOffset, int length) {
+        double t0 = 0.0, t1 = 0.0, t2 = 0.0, t3 = 0.0;
+        final int end = length & ~3;
+        for (int i = 0; i < end; i += 4) {
+            final int b = yOffset + i;
+            t0 += x[i] * y.get(b);
+            t1 += x[i + 1] * y.get(b + 1);
+            t2 += x[i + 2] * y.get(b + 2);
+            t3 += x[i + 3] * y.get(b + 3);
+        }
+        for (int i = end; i < length; i++) {
+            t0 += x[i] * y.get(yOffset + i);
+        }
+        return (t0 + t1) + (t2 + t3);
+    }
+
+    /**
+     * y += a * x
+     * @param a scalar factor
+     * @param x source array
+     * @param xOffset offset of the first source element
+     * @param y target array
+     * @param yOffset offset of the first target element
+     * @param length number of elements
+     */
+    static void axpy(double a, double[] x, int xOffset, double[] y, int yOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            y[yOffset + i] += a * x[xOffset + i];
+        }
+    }
+
+    /**
+     * propagate the deltas of a layer back onto its precursor without applying
+     * the derivative of the activation. the rows of the weight matrix are
+     * accumulated so the weights are read sequentially.
+     * @param delta target array for the precursor deltas
+     * @param inputs number of units in the precursor
+     * @param nextDelta deltas of the layer
+     * @param units number of units in the layer
+     * @param weights weights of the layer
+     */
+    static void backward(double[] delta, int inputs, double[] nextDelta, int units, double[] weights) {
+        Arrays.fill(delta, 0, inputs, 0.0);
+        for (int j = 0; j < units; j++) {
+            axpy(nextDelta[j], weights, j * inputs, delta, 0, inputs);
+        }
+    }
+
+    /**
+     * forward step of a layer whose input is sparse. only the
+     * weights of the non-zero inputs are read.
+     * @param out output array of at least units elements
+     * @param in the sparse input
+     * @param units number of units in the layer
+     * @param bias biases of the layer
+     * @param weights weights of the layer
+     * @param activation the activation of the layer
+     */
+    static void forward(double[] out, SparseVector in, int units, double[] bias, double[] weights, Activation activation) {
+        final int[] indices = in.indices;
+        final double[] values = in.values;
+        for (int j = 0; j < units; j++) {
+            final int offset = j * in.size;
+            double sum = 0.0;
+            for (int k = 0; k < indices.length; k++) {
+                sum += weights[offset + indices[k]] * values[k];
+            }
+            out[j] = bias[j] + sum;
+        }
+        activation.apply(out, 0, units);
+    }
+
+    /**
+     * y[offset + indices[k]] += a * x[k] for each non-zero value of a sparse vector
+     * @param a factor
+     * @param x the sparse vector
+     * @param y target array
+     * @param offset offset of the first element in y
+     */
+    static void axpy(double a, SparseVector x, double[] y, int offset) {
+        final int[] indices = x.indices;
+        final double[] values = x.values;
+        for (int k = 0; k < indices.length; k++) {
+            y[offset + indices[k]] += a * values[k];
+        }
+    }
+
+    /**
+     * fused backward step and gradient descent update of a region of a row of
+     * weights. the delta of the row is propagated onto the precursor deltas
+     * using the weights before the update, so each weight is read and
+     * written only once.
+     * @param delta precursor deltas to accumulate into
+     * @param precursor output values of the precursor
+     * @param from index of the first precursor unit
+     * @param weights weights of the layer
+     * @param offset offset of the weight of unit from in the row
+     * @param d delta of the unit
+     * @param a factor of the update, -rate * d
+     * @param decay factor of the weights before the update, 1 - rate * weight decay
+     * @param length number of precursor units
+     */
+    static void backwardUpdate(double[] delta, double[] precursor, int from, double[] weights, int offset,
+                               double d, double a, double decay, int length) {
+        for (int i = 0; i < length; i++) {
+            final double w = weights[offset + i];
+            delta[from + i] += d * w;
+            weights[offset + i] = decay * w + a * precursor[from + i];
+        }
+    }
+
+    /**
+     * y = b * y + a * x
+     * @param a factor of x
+     * @param x source array
+     * @param xOffset offset of the first source element
+     * @param b factor of y
+     * @param y target array
+     * @param yOffset offset of the first target element
+     * @param length number of elements
+     */
+    static void axpby(double a, double[] x, int xOffset, double b, double[] y, int yOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            y[yOffset + i] = b * y[yOffset + i] + a * x[xOffset + i];
+        }
+    }
+
+    /**
+     * x = a * x
+     * @param a factor
+     * @param x the array
+     * @param offset offset of the first element
+     * @param length number of elements
+     */
+    static void scale(double a, double[] x, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            x[offset + i] *= a;
+        }
+    }
+
+    /**
+     * single precision forward step of a single layer
+     * @param out output array of at least units elements
+     * @param in input array
+     * @param inOffset offset of the first input value
+     * @param inputs number of input values
+     * @param units number of units in the layer
+     * @param bias biases of the layer
+     * @param weights neuron-major weights of the layer
+     * @param activation the activation of the layer
+     */
+    static void forward(float[] out, float[] in, int inOffset, int inputs, int units,
+                        float[] bias, float[] weights, Activation activation) {
+        for (int j = 0; j < units; j++) {
+            out[j] = bias[j] + dot(in, inOffset, weights, j * inputs, inputs);
+        }
+        activation.apply(out, 0, units);
+    }
+
+    /**
+     * single precision dot product with four independent accumulators
+     * like {@link #dot(double[], int, double[], int, int)}
+     * @param x first array
+     * @param xOffset offset of the first element of x
+     * @param y second array
+     * @param yOffset offset of the first element of y
+     * @param length number of elements
+     * @return sum of x[i] * y[i]
+     */
+    static float dot(float[] x, int xOffset, float[] y, int yOffset, int length) {
+        float t0 = 0.0f, t1 = 0.0f, t2 = 0.0f, t3 = 0.0f;
+        final int end = length & ~3;
+        for (int i = 0; i < end; i += 4) {
+            final int a = xOffset + i;
+            final int b = yOffset + i;
+            t0 += x[a] * y[b];
+            t1 += x[a + 1] * y[b + 1];
+            t2 += x[a + 2] * y[b + 2];
+            t3 += x[a + 3] * y[b + 3];
+        }
+        for (int i = end; i < length; i++) {
+            t0 += x[xOffset + i] * y[yOffset + i];
+        }
+        return (t0 + t1) + (t2 + t3);
+    }
+
+    /**
+     * single precision y += a * x
+     * @param a scalar factor
+     * @param x source array
+     * @param xOffset offset of the first source element
+     * @param y target array
+     * @param yOffset offset of the first target element
+     * @param length number of elements
+     */
+    static void axpy(float a, float[] x, int xOffset, float[] y, int yOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            y[yOffset + i] += a * x[xOffset + i];
+        }
+    }
+
+    /**
+     * single precision variant of {@link #backward(double[], int, double[], int, double[])}
+     * @param delta target array for the precursor deltas
+     * @param inputs number of units in the precursor
+     * @param nextDelta deltas of the layer
+     * @param units number of units in the layer
+     * @param weights weights of the layer
+     */
+    static void backward(float[] delta, int inputs, float[] nextDelta, int units, float[] weights) {
+        Arrays.fill(delta, 0, inputs, 0.0f);
+        for (int j = 0; j < units; j++) {
+            axpy(nextDelta[j], weights, j * inputs, delta, 0, inputs);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package de.mknblch.fnn;
+
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Immutable model whose biases and weights are served from a memory mapped
+ * {@link ModelFile}. The parameters are never copied into the heap, so several
+ * processes mapping the same file share its pages.
+ *
+ * @author mknblch
+ */
+public final class MappedModel implements Predictor {
+
+    // the mapping (kept to document its lifetime)
+    private final MappedByteBuffer buffer;
+    // number of units per layer including input and output layers
+    final int[] sizes;
+    // activations per layer (index 0 is the input layer and unused)
+    final Activation[] activations;
+    // bias views per layer (index 0 is the input layer and unused)
+    final DoubleBuffer[] bias;
+    // weight views per layer (index 0 is the input layer and unused)
+    final DoubleBuffer[] weights;
+    // lazily created buffers for the hidden layer values
+    private final ThreadLocal<double[][]> scratch = ThreadLocal.withInitial(this::newScratch);
+
+    MappedModel(MappedByteBuffer buffer, int[] sizes, Activation[] activations, DoubleBuffer[] bias, DoubleBuffer[] weights) {
+        this.buffer = buffer;
+        this.sizes = sizes;
+        this.activations = activations;
+        this.bias = bias;
+        this.weights = weights;
+    }
+
+    @Override
+    public int inputSize() {
+        return sizes[0];
+    }
+
+    @Override
+    public int outputSize() {
+        return sizes[sizes.length - 1];
+    }
+
+    /**
+     * number of hidden layers
+     * @return number of hidden layers
+     */
+    public int numLayer() {
+        return sizes.length - 2;
+    }
+
+    /**
+     * load the mapped file into physical memory
+     * @return itself for method chaining
+     */
+    public MappedModel load() {
+        buffer.load();
+        return this;
+    }
+
+    @Override
+    public double[] eval(double[] input, double[] output) {
+        final double[][] values = scratch.get();
+        final int last = sizes.length - 1;
+        double[] precursor = input;
+        for (int l = 1; l <= last; l++) {
+            final double[] out = l == last ? output : values[l];
+            Kernels.forward(out, precursor, sizes[l - 1], sizes[l], bias[l], weights[l], activations[l]);
+            precursor = out;
+        }
+        return output;
+    }
+
+    private double[][] newScratch() {
+        final double[][] values = new double[sizes.length][];
+        for (int i = 1; i < sizes.length - 1; i++) {
+            values[i] = new double[sizes[i]];
+        }
+        return values;
+    }
+}
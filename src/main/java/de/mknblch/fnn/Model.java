@@ -0,0 +1,204 @@
+package de.mknblch.fnn;
+
+/**
+ * Immutable snapshot of a network. Unlike {@link FNN} it does not keep any
+ * output state, so a single instance can be shared between threads. Intermediate
+ * values are written into per-thread or caller supplied {@link Scratch} buffers.
+ *
+ * @author mknblch
+ */
+public final class Model implements Predictor {
+
+    // number of units per layer including input and output layers
+    final int[] sizes;
+    // biases per layer (index 0 is the input layer and unused)
+    final double[][] bias;
+    // weights per layer (index 0 is the input layer and unused)
+    final double[][] weights;
+    // activations per layer (index 0 is the input layer and unused)
+    final Activation[] activations;
+    // lazily created scratch buffers for callers without own buffers
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(this::newScratch);
+    // lazily created scratch buffers for batched evaluation
+    private final ThreadLocal<BatchScratch> batchScratch = ThreadLocal.withInitial(this::newBatchScratch);
+
+    /**
+     * copy layout, activations, biases and weights of the given layers
+     * @param layers the network layers
+     */
+    Model(FNN.Layer[] layers) {
+        sizes = new int[layers.length];
+        activations = new Activation[layers.length];
+        bias = new double[layers.length][];
+        weights = new double[layers.length][];
+        for (int i = 0; i < layers.length; i++) {
+            sizes[i] = layers[i].values.length;
+            activations[i] = layers[i].activation;
+            bias[i] = layers[i].bias.clone();
+            weights[i] = layers[i].weights.clone();
+        }
+    }
+
+    /**
+     * create a model from the given arrays without copying them
+     * @param sizes number of units per layer
+     * @param activations activations per layer
+     * @param bias biases per layer
+     * @param weights weights per layer
+     */
+    Model(int[] sizes, Activation[] activations, double[][] bias, double[][] weights) {
+        this.sizes = sizes;
+        this.activations = activations;
+        this.bias = bias;
+        this.weights = weights;
+    }
+
+    @Override
+    public int inputSize() {
+        return sizes[0];
+    }
+
+    @Override
+    public int outputSize() {
+        return sizes[sizes.length - 1];
+    }
+
+    /**
+     * number of hidden layers
+     * @return number of hidden layers
+     */
+    public int numLayer() {
+        return sizes.length - 2;
+    }
+
+    /**
+     * create a new set of buffers for intermediate values
+     * @return new scratch buffers
+     */
+    public Scratch newScratch() {
+        return new Scratch(sizes);
+    }
+
+    private BatchScratch newBatchScratch() {
+        return new BatchScratch(sizes);
+    }
+
+    /**
+     * feed the network with given values using scratch
+     * buffers bound to the current thread
+     * @param input the input values
+     * @param output array of at least {@link #outputSize()} elements
+     * @return the output array
+     */
+    @Override
+    public double[] eval(double[] input, double[] output) {
+        return eval(input, output, scratch.get());
+    }
+
+    /**
+     * feed the network with given values. does not allocate.
+     * @param input the input values
+     * @param output array of at least {@link #outputSize()} elements
+     * @param scratch scratch buffers of this model which must not be used concurrently
+     * @return the output array
+     */
+    public double[] eval(double[] input, double[] output, Scratch scratch) {
+        final int last = sizes.length - 1;
+        double[] precursor = input;
+        for (int l = 1; l <= last; l++) {
+            final double[] values = l == last ? output : scratch.values[l];
+            Kernels.forward(values, precursor, 0, sizes[l - 1], sizes[l], bias[l], weights[l], activations[l]);
+            precursor = values;
+        }
+        return output;
+    }
+
+    /**
+     * feed the network with sparse input values using scratch buffers bound to
+     * the current thread. the first layer only reads the weights of the non-zero inputs.
+     * @param input the sparse input values
+     * @param output array of at least {@link #outputSize()} elements
+     * @return the output array
+     */
+    public double[] eval(SparseVector input, double[] output) {
+        if (input.size != sizes[0]) {
+            throw new IllegalArgumentException("Invalid input size " + input.size);
+        }
+        final Scratch scratch = this.scratch.get();
+        final int last = sizes.length - 1;
+        double[] precursor = last == 1 ? output : scratch.values[1];
+        Kernels.forward(precursor, input, sizes[1], bias[1], weights[1], activations[1]);
+        for (int l = 2; l <= last; l++) {
+            final double[] values = l == last ? output : scratch.values[l];
+            Kernels.forward(values, precursor, 0, sizes[l - 1], sizes[l], bias[l], weights[l], activations[l]);
+            precursor = values;
+        }
+        return output;
+    }
+
+    /**
+     * feed the network with a row-major batch of input values. each layer is
+     * evaluated for blocks of {@link BatchScratch#ROWS} rows at once so its
+     * weights stay in cache while being applied to all of them.
+     * @param inputs array of at least rows * {@link #inputSize()} elements
+     * @param rows number of rows in the batch
+     * @param outputs array of at least rows * {@link #outputSize()} elements
+     * @return the output array
+     */
+    @Override
+    public double[] eval(double[] inputs, int rows, double[] outputs) {
+        final BatchScratch scratch = batchScratch.get();
+        final int last = sizes.length - 1;
+        for (int r0 = 0; r0 < rows; r0 += BatchScratch.ROWS) {
+            final int block = Math.min(BatchScratch.ROWS, rows - r0);
+            double[] precursor = inputs;
+            int precursorOffset = r0 * sizes[0];
+            for (int l = 1; l <= last; l++) {
+                final double[] values = l == last ? outputs : scratch.values[l & 1];
+                final int valuesOffset = l == last ? r0 * sizes[last] : 0;
+                Kernels.forwardBatch(values, valuesOffset, precursor, precursorOffset, block,
+                        sizes[l - 1], sizes[l], bias[l], weights[l], activations[l]);
+                precursor = values;
+                precursorOffset = valuesOffset;
+            }
+        }
+        return outputs;
+    }
+
+    /**
+     * intermediate buffers for a single evaluating thread
+     */
+    public static final class Scratch {
+
+        // values of the hidden layers
+        private final double[][] values;
+
+        private Scratch(int[] sizes) {
+            values = new double[sizes.length][];
+            for (int i = 1; i < sizes.length - 1; i++) {
+                values[i] = new double[sizes[i]];
+            }
+        }
+    }
+
+    /**
+     * alternating intermediate buffers for batched evaluation
+     */
+    private static final class BatchScratch {
+
+        // number of rows evaluated at once
+        static final int ROWS = 64;
+
+        // two buffers large enough for the widest hidden layer
+        private final double[][] values = new double[2][];
+
+        private BatchScratch(int[] sizes) {
+            int width = 0;
+            for (int i = 1; i < sizes.length - 1; i++) {
+                width = Math.max(width, sizes[i]);
+            }
+            values[0] = new double[ROWS * width];
+            values[1] = new double[ROWS * width];
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package de.mknblch.fnn;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * versioned binary model format. all values are little endian:
+ *
+ * <pre>
+ *     int      magic ("FNN\0")
+ *     int      version
+ *     int      number of layers L
+ *     int[L]   units per layer
+ *     int[L]   activation ordinal per layer (-1 for the input layer)
+ *     ...      zero padding to a multiple of 8 bytes
+ *     for each layer except the input layer:
+ *     double[] biases
+ *     double[] neuron-major weights
+ * </pre>
+ *
+ * the padding keeps the parameters aligned so they can be served
+ * straight from a memory mapped file.
+ *
+ * @author mknblch
+ */
+public final class ModelFile {
+
+    // "FNN\0"
+    static final int MAGIC = 0x464E4E00;
+    // current format version
+    static final int VERSION = 1;
+
+    private ModelFile() {
+    }
+
+    /**
+     * write the model into the given file. the model is written into a
+     * temporary file next to the target which then atomically replaces it,
+     * so processes which have the previous file mapped keep reading it.
+     * @param model the model
+     * @param path the target file (created or replaced)
+     * @throws IOException if writing fails
+     */
+    public static void write(Model model, Path path) throws IOException {
+        final int[] sizes = model.sizes;
+        final long header = header(sizes.length);
+        long length = header;
+        for (int l = 1; l < sizes.length; l++) {
+            length += 8L * (model.bias[l].length + model.weights[l].length);
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(length)).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(sizes.length);
+        for (int size : sizes) {
+            buffer.putInt(size);
+        }
+        for (int l = 0; l < sizes.length; l++) {
+            buffer.putInt(l == 0 ? -1 : model.activations[l].ordinal());
+        }
+        ((Buffer) buffer).position((int) header);
+        final DoubleBuffer doubles = buffer.asDoubleBuffer();
+        for (int l = 1; l < sizes.length; l++) {
+            doubles.put(model.bias[l]).put(model.weights[l]);
+        }
+        final Path target = path.toAbsolutePath();
+        final Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ((Buffer) buffer).rewind();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * read a model from the given file into the heap
+     * @param path the model file
+     * @return the model
+     * @throws IOException if reading fails or the file is not a valid model
+     */
+    public static Model read(Path path) throws IOException {
+        final MappedModel mapped = map(path);
+        final int[] sizes = mapped.sizes;
+        final double[][] bias = new double[sizes.length][];
+        final double[][] weights = new double[sizes.length][];
+        bias[0] = new double[0];
+        weights[0] = new double[0];
+        for (int l = 1; l < sizes.length; l++) {
+            bias[l] = new double[sizes[l]];
+            weights[l] = new double[sizes[l - 1] * sizes[l]];
+            mapped.bias[l].duplicate().get(bias[l]);
+            mapped.weights[l].duplicate().get(weights[l]);
+        }
+        return new Model(sizes, mapped.activations, bias, weights);
+    }
+
+    /**
+     * memory map the given file. biases and weights are read directly
+     * from the mapping without copying them into the heap.
+     * @param path the model file
+     * @return a model backed by the mapped file
+     * @throws IOException if mapping fails or the file is not a valid model
+     */
+    public static MappedModel map(Path path) throws IOException {
+        final MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Model file too large: " + channel.size());
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < 12 || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a model file: " + path);
+        }
+        final int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported model version " + version);
+        }
+        final int layers = buffer.getInt();
+        if (layers < 2 || header(layers) > buffer.limit()) {
+            throw new IOException("Invalid number of layers " + layers);
+        }
+        final int[] sizes = new int[layers];
+        final Activation[] activations = new Activation[layers];
+        for (int l = 0; l < layers; l++) {
+            sizes[l] = buffer.getInt();
+            if (sizes[l] < 1) {
+                throw new IOException("Invalid size " + sizes[l] + " of layer " + l);
+            }
+        }
+        final Activation[] values = Activation.values();
+        for (int l = 0; l < layers; l++) {
+            final int ordinal = buffer.getInt();
+            if (l > 0 && (ordinal < 0 || ordinal >= values.length)) {
+                throw new IOException("Invalid activation " + ordinal + " in layer " + l);
+            }
+            activations[l] = l == 0 ? null : values[ordinal];
+        }
+        final DoubleBuffer[] bias = new DoubleBuffer[layers];
+        final DoubleBuffer[] weights = new DoubleBuffer[layers];
+        long offset = header(layers);
+        for (int l = 1; l < layers; l++) {
+            final long weightCount = (long) sizes[l - 1] * sizes[l];
+            if (offset + 8L * (sizes[l] + weightCount) > buffer.limit()) {
+                throw new IOException("Truncated model file: " + path);
+            }
+            bias[l] = doubles(buffer, (int) offset, sizes[l]);
+            offset += 8L * sizes[l];
+            weights[l] = doubles(buffer, (int) offset, (int) weightCount);
+            offset += 8L * weightCount;
+        }
+        return new MappedModel(buffer, sizes, activations, bias, weights);
+    }
+
+    /**
+     * size of the header including padding
+     * @param layers number of layers
+     * @return size in bytes
+     */
+    private static long header(int layers) {
+        final long size = 12L + 8L * layers;
+        return (size + 7) & ~7L;
+    }
+
+    /**
+     * create a little endian double view on a region of the buffer
+     * @param buffer the buffer
+     * @param offset offset of the region in bytes
+     * @param length number of doubles
+     * @return the view
+     */
+    private static DoubleBuffer doubles(ByteBuffer buffer, int offset, int length) {
+        final ByteBuffer region = buffer.duplicate();
+        ((Buffer) region).limit(offset + 8 * length);
+        ((Buffer) region).position(offset);
+        return region.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+    }
+}
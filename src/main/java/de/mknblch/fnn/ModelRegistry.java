@@ -0,0 +1,353 @@
+package de.mknblch.fnn;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Named, hot swappable predictors. Callers obtain a stable {@link #get(String) handle}
+ * which always evaluates the currently registered predictor: a swap is a single
+ * volatile write, so in-flight evaluations finish on the previous (immutable)
+ * predictor while new ones see the replacement without any locking. Registrations
+ * are checked against an optional capacity for the heap footprint of all biases and
+ * weights, so the memory held by a fleet of models stays bounded.
+ *
+ * <pre>
+ *     ModelRegistry registry = ModelRegistry.withCapacity(64 &lt;&lt; 20);
+ *     registry.put("a", modelA);
+ *     registry.put("b", modelB);
+ *     Predictor a = registry.get("a");
+ *     Predictor both = registry.ensemble(ModelRegistry.Combiner.AVERAGE, "a", "b");
+ *     registry.put("a", retrainedA);   // a and both now evaluate retrainedA
+ * </pre>
+ *
+ * @author mknblch
+ */
+public final class ModelRegistry {
+
+    // maximum heap bytes of the biases and weights of all predictors
+    private final long capacity;
+    // handles by name, including those of removed predictors
+    private final Map<String, Handle> handles = new ConcurrentHashMap<>();
+    // number of names per registered predictor instance
+    private final Map<Predictor, Integer> references = new IdentityHashMap<>();
+    // heap bytes of the biases and weights of all registered predictors
+    private long footprint = 0L;
+
+    private ModelRegistry(long capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * create a registry without capacity limit
+     * @return a new registry
+     */
+    public static ModelRegistry unbounded() {
+        return new ModelRegistry(Long.MAX_VALUE);
+    }
+
+    /**
+     * create a registry with a limited footprint
+     * @param capacity maximum number of heap bytes held by the biases and weights of all predictors
+     * @return a new registry
+     */
+    public static ModelRegistry withCapacity(long capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        }
+        return new ModelRegistry(capacity);
+    }
+
+    /**
+     * register a predictor or atomically replace the one registered under the given name.
+     * a replacement must have the same input and output size. a predictor instance
+     * registered under several names is counted once against the capacity.
+     * @param name name of the predictor
+     * @param predictor an immutable, thread-safe predictor
+     * @return the replaced predictor or null
+     * @throws IllegalArgumentException if the sizes of a replacement differ
+     * @throws IllegalStateException if the capacity would be exceeded
+     */
+    public synchronized Predictor put(String name, Predictor predictor) {
+        final Handle handle = handles.get(name);
+        final Predictor previous = handle == null ? null : handle.current;
+        if (previous != null && (previous.inputSize() != predictor.inputSize()
+                || previous.outputSize() != predictor.outputSize())) {
+            throw new IllegalArgumentException("Predictor '" + name + "' expects " + previous.inputSize()
+                    + " inputs and " + previous.outputSize() + " outputs");
+        }
+        if (previous == predictor) {
+            return previous;
+        }
+        final long released = previous != null && references.get(previous) == 1 ? footprint(previous) : 0L;
+        final long added = references.containsKey(predictor) ? 0L : footprint(predictor);
+        final long required = footprint - released + added;
+        if (required > capacity) {
+            throw new IllegalStateException("Capacity of " + capacity + " bytes exceeded by " + (required - capacity));
+        }
+        footprint = required;
+        references.merge(predictor, 1, Integer::sum);
+        if (previous != null) {
+            release(previous);
+        }
+        if (handle != null && handle.inputSize == predictor.inputSize() && handle.outputSize == predictor.outputSize()) {
+            // revives the handles of a removed predictor as well
+            handle.current = predictor;
+        } else {
+            handles.put(name, new Handle(name, predictor));
+        }
+        return previous;
+    }
+
+    /**
+     * get a handle which evaluates the predictor currently registered under the given name
+     * @param name name of the predictor
+     * @return the handle
+     * @throws IllegalArgumentException if no predictor is registered under the name
+     */
+    public Predictor get(String name) {
+        final Handle handle = handles.get(name);
+        if (handle == null || handle.current == null) {
+            throw new IllegalArgumentException("Unknown predictor '" + name + "'");
+        }
+        return handle;
+    }
+
+    /**
+     * unregister a predictor. existing handles fail on subsequent evaluations until
+     * a predictor with the same sizes is registered under the name again.
+     * @param name name of the predictor
+     * @return the removed predictor or null
+     */
+    public synchronized Predictor remove(String name) {
+        final Handle handle = handles.get(name);
+        final Predictor previous = handle == null ? null : handle.current;
+        if (previous == null) {
+            return null;
+        }
+        if (references.get(previous) == 1) {
+            footprint -= footprint(previous);
+        }
+        release(previous);
+        handle.current = null;
+        return previous;
+    }
+
+    /**
+     * names of all registered predictors
+     * @return the names
+     */
+    public Set<String> names() {
+        final Set<String> names = new HashSet<>();
+        handles.forEach((name, handle) -> {
+            if (handle.current != null) {
+                names.add(name);
+            }
+        });
+        return Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * heap bytes held by the biases and weights of all registered predictors
+     * @return the footprint
+     */
+    public synchronized long footprint() {
+        return footprint;
+    }
+
+    /**
+     * create a predictor combining the outputs of the given predictors. members are
+     * evaluated by handle, so replacements take effect for the ensemble as well.
+     * @param combiner how the outputs are combined
+     * @param names names of the member predictors
+     * @return the ensemble
+     * @throws IllegalArgumentException if a member is unknown or the sizes of the members differ
+     */
+    public Predictor ensemble(Combiner combiner, String... names) {
+        if (names.length == 0) {
+            throw new IllegalArgumentException("Empty ensemble");
+        }
+        final Predictor[] members = new Predictor[names.length];
+        for (int m = 0; m < names.length; m++) {
+            members[m] = get(names[m]);
+            if (members[m].inputSize() != members[0].inputSize() || members[m].outputSize() != members[0].outputSize()) {
+                throw new IllegalArgumentException("Predictor '" + names[m] + "' does not match '" + names[0] + "'");
+            }
+        }
+        return new Ensemble(combiner, members);
+    }
+
+    /**
+     * drop one reference of a registered predictor instance
+     */
+    private void release(Predictor predictor) {
+        references.computeIfPresent(predictor, (key, count) -> count == 1 ? null : count - 1);
+    }
+
+    /**
+     * heap bytes of the biases and weights of a predictor. mapped
+     * and unknown predictors are not counted.
+     */
+    static long footprint(Predictor predictor) {
+        if (predictor instanceof Model) {
+            return 8L * parameters(((Model) predictor).sizes);
+        }
+        if (predictor instanceof FloatModel) {
+            return 4L * parameters(((FloatModel) predictor).sizes);
+        }
+        if (predictor instanceof CompiledModel) {
+            return 8L * ((CompiledModel) predictor).params.length;
+        }
+        if (predictor instanceof QuantizedModel) {
+            // one byte per weight, a double bias and scale per unit
+            final int[] sizes = ((QuantizedModel) predictor).sizes;
+            long bytes = 0L;
+            for (int l = 1; l < sizes.length; l++) {
+                bytes += (long) sizes[l] * (sizes[l - 1] + 16);
+            }
+            return bytes;
+        }
+        return 0L;
+    }
+
+    private static long parameters(int[] sizes) {
+        long parameters = 0L;
+        for (int l = 1; l < sizes.length; l++) {
+            parameters += (long) sizes[l] * (sizes[l - 1] + 1);
+        }
+        return parameters;
+    }
+
+    /**
+     * how an ensemble combines the outputs of its members
+     */
+    public enum Combiner {
+
+        /**
+         * mean of the member outputs
+         */
+        AVERAGE,
+
+        /**
+         * fraction of members whose largest output is at each position
+         */
+        VOTE
+    }
+
+    /**
+     * stable reference to the current predictor of a name
+     */
+    private static final class Handle implements Predictor {
+
+        // name of the predictor
+        private final String name;
+        // input values, fixed for all replacements
+        private final int inputSize;
+        // output values, fixed for all replacements
+        private final int outputSize;
+        // the current predictor or null after removal
+        private volatile Predictor current;
+
+        private Handle(String name, Predictor predictor) {
+            this.name = name;
+            this.inputSize = predictor.inputSize();
+            this.outputSize = predictor.outputSize();
+            this.current = predictor;
+        }
+
+        @Override
+        public int inputSize() {
+            return inputSize;
+        }
+
+        @Override
+        public int outputSize() {
+            return outputSize;
+        }
+
+        @Override
+        public double[] eval(double[] input, double[] output) {
+            return current().eval(input, output);
+        }
+
+        @Override
+        public double[] eval(double[] inputs, int rows, double[] outputs) {
+            return current().eval(inputs, rows, outputs);
+        }
+
+        private Predictor current() {
+            final Predictor predictor = current;
+            if (predictor == null) {
+                throw new IllegalStateException("Predictor '" + name + "' was removed");
+            }
+            return predictor;
+        }
+    }
+
+    /**
+     * evaluates all members with one batched call each and combines their outputs
+     */
+    private static final class Ensemble implements Predictor {
+
+        // how outputs are combined
+        private final Combiner combiner;
+        // member handles
+        private final Predictor[] members;
+        // lazily created buffer for the outputs of a member
+        private final ThreadLocal<double[][]> scratch = ThreadLocal.withInitial(() -> new double[1][0]);
+
+        private Ensemble(Combiner combiner, Predictor[] members) {
+            this.combiner = combiner;
+            this.members = members;
+        }
+
+        @Override
+        public int inputSize() {
+            return members[0].inputSize();
+        }
+
+        @Override
+        public int outputSize() {
+            return members[0].outputSize();
+        }
+
+        @Override
+        public double[] eval(double[] input, double[] output) {
+            return eval(input, 1, output);
+        }
+
+        @Override
+        public double[] eval(double[] inputs, int rows, double[] outputs) {
+            final int out = outputSize();
+            final int length = rows * out;
+            final double[][] holder = scratch.get();
+            if (holder[0].length < length) {
+                holder[0] = new double[length];
+            }
+            final double[] buffer = holder[0];
+            final double weight = 1.0 / members.length;
+            Arrays.fill(outputs, 0, length, 0.0);
+            for (Predictor member : members) {
+                member.eval(inputs, rows, buffer);
+                if (combiner == Combiner.AVERAGE) {
+                    Kernels.axpy(weight, buffer, 0, outputs, 0, length);
+                } else {
+                    for (int r = 0; r < length; r += out) {
+                        int best = r;
+                        for (int j = r + 1; j < r + out; j++) {
+                            if (buffer[j] > buffer[best]) {
+                                best = j;
+                            }
+                        }
+                        outputs[best] += weight;
+                    }
+                }
+            }
+            return outputs;
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package de.mknblch.fnn;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Continuous training on a live stream of samples. A background thread takes
+ * samples either from a bounded queue ({@link #offer(double[], double[])},
+ * {@link #put(double[], double[])}) or from a {@link Spliterator}, trains them in
+ * micro-batches of bounded size and periodically publishes an immutable
+ * {@link Model} snapshot for serving. Snapshots are taken between two
+ * micro-batches on the training thread, so they are always consistent.
+ * The trainer must not be used by other threads while the online training runs.
+ *
+ * <pre>
+ *     try (OnlineTrainer online = OnlineTrainer.of(trainer)
+ *             .withMicroBatchSize(32)
+ *             .withPublishInterval(1, TimeUnit.MINUTES)
+ *             .withPublisher(model -&gt; registry.put("a", model))
+ *             .start()) {
+ *         online.put(input, expected);
+ *     }
+ * </pre>
+ *
+ * @author mknblch
+ */
+public final class OnlineTrainer implements AutoCloseable {
+
+    // the trained network
+    private final Trainer trainer;
+    // input values per sample
+    private final int inputSize;
+    // expected values per sample
+    private final int expectedSize;
+    // the latest published snapshot
+    private final AtomicReference<Model> snapshot;
+    // maximum number of samples per micro-batch
+    private int microBatchSize = 32;
+    // minimum time between two snapshots
+    private long publishNanos = TimeUnit.MINUTES.toNanos(1);
+    // maximum number of pending samples
+    private int queueCapacity = 1 << 14;
+    // called with every published snapshot
+    private Consumer<? super Model> publisher = model -> { };
+    // split large layers according to the execution policy of the trainer
+    private boolean parallel = true;
+    // pending samples, null until started
+    private volatile BlockingQueue<Sample> queue = null;
+    // the training thread, null until started
+    private Thread thread = null;
+    // false after close or at the end of the source
+    private volatile boolean running = false;
+    // number of trained samples
+    private volatile long samples = 0L;
+    // mean error of the last micro-batch
+    private volatile double error = Double.NaN;
+    // failure of the training thread
+    private volatile RuntimeException failure = null;
+
+    private OnlineTrainer(Trainer trainer) {
+        this.trainer = trainer;
+        final FNN.Layer[] layers = trainer.layers();
+        this.inputSize = layers[0].values.length;
+        this.expectedSize = layers[layers.length - 1].values.length;
+        this.snapshot = new AtomicReference<>(trainer.toModel());
+    }
+
+    /**
+     * create an online training for the given trainer
+     * @param trainer the trainer
+     * @return a new, not yet started online training
+     */
+    public static OnlineTrainer of(Trainer trainer) {
+        return new OnlineTrainer(trainer);
+    }
+
+    /**
+     * set the maximum number of samples per micro-batch (32 by default). micro-batches
+     * are not delayed to be filled, they hold all samples available up to this size.
+     * @param microBatchSize maximum micro-batch size
+     * @return itself for method chaining
+     */
+    public OnlineTrainer withMicroBatchSize(int microBatchSize) {
+        if (microBatchSize < 1) {
+            throw new IllegalArgumentException("Invalid micro-batch size " + microBatchSize);
+        }
+        this.microBatchSize = microBatchSize;
+        return this;
+    }
+
+    /**
+     * set the minimum time between two published snapshots (1 minute by default)
+     * @param time the time
+     * @param unit unit of the time
+     * @return itself for method chaining
+     */
+    public OnlineTrainer withPublishInterval(long time, TimeUnit unit) {
+        if (time < 0) {
+            throw new IllegalArgumentException("Invalid publish interval " + time);
+        }
+        this.publishNanos = unit.toNanos(time);
+        return this;
+    }
+
+    /**
+     * set the maximum number of pending samples of the queue
+     * @param queueCapacity capacity of the queue
+     * @return itself for method chaining
+     */
+    public OnlineTrainer withQueueCapacity(int queueCapacity) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Invalid queue capacity " + queueCapacity);
+        }
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    /**
+     * set a consumer which is called on the training thread with every published snapshot
+     * @param publisher the consumer
+     * @return itself for method chaining
+     */
+    public OnlineTrainer withPublisher(Consumer<? super Model> publisher) {
+        this.publisher = publisher;
+        return this;
+    }
+
+    /**
+     * compute each micro-batch sequentially or according to the execution policy of the trainer
+     * @param parallel true by default
+     * @return itself for method chaining
+     */
+    public OnlineTrainer parallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    /**
+     * start training the samples added to the queue
+     * @return itself for method chaining
+     */
+    public OnlineTrainer start() {
+        final BlockingQueue<Sample> queue = new ArrayBlockingQueue<>(queueCapacity);
+        final List<Sample> batch = new ArrayList<>(microBatchSize);
+        return start(queue, (inputs, expected) -> {
+            queue.drainTo(batch, microBatchSize);
+            if (batch.isEmpty()) {
+                final boolean closed = !running;
+                final Sample sample = queue.poll(10, TimeUnit.MILLISECONDS);
+                if (sample == null) {
+                    // samples offered before close are drained first
+                    return closed ? -1 : 0;
+                }
+                batch.add(sample);
+            }
+            final int rows = batch.size();
+            for (int r = 0; r < rows; r++) {
+                copy(batch.get(r), inputs, expected, r);
+            }
+            batch.clear();
+            return rows;
+        });
+    }
+
+    /**
+     * start training all samples of the spliterator. the
+     * training ends at the end of the spliterator.
+     * @param source the samples
+     * @return itself for method chaining
+     */
+    public OnlineTrainer start(Spliterator<Sample> source) {
+        final int[] rows = new int[1];
+        return start(null, (inputs, expected) -> {
+            rows[0] = 0;
+            while (running && rows[0] < microBatchSize
+                    && source.tryAdvance(sample -> copy(sample, inputs, expected, rows[0]++))) {
+                // take samples up to the micro-batch size
+            }
+            return rows[0] == 0 ? -1 : rows[0];
+        });
+    }
+
+    /**
+     * start training all samples of the stream
+     * @param source the samples
+     * @return itself for method chaining
+     */
+    public OnlineTrainer start(Stream<Sample> source) {
+        return start(source.spliterator());
+    }
+
+    private synchronized OnlineTrainer start(BlockingQueue<Sample> queue, Source source) {
+        if (thread != null) {
+            throw new IllegalStateException("Online training already started");
+        }
+        this.queue = queue;
+        running = true;
+        thread = new Thread(() -> run(source), "online-trainer");
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    /**
+     * add a sample to the queue if there is space
+     * @param input the input values
+     * @param expected the expected values
+     * @return true if the sample has been added, false if the queue
+     * is full or the online training is not running
+     */
+    public boolean offer(double[] input, double[] expected) {
+        final Sample sample = check(Sample.of(input, expected));
+        final BlockingQueue<Sample> queue = queue();
+        return running && queue.offer(sample) && accepted(queue, sample);
+    }
+
+    /**
+     * add a sample to the queue, waiting for space if necessary
+     * @param input the input values
+     * @param expected the expected values
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IllegalStateException if the online training is not running
+     */
+    public void put(double[] input, double[] expected) throws InterruptedException {
+        final Sample sample = check(Sample.of(input, expected));
+        final BlockingQueue<Sample> queue = queue();
+        while (running) {
+            if (queue.offer(sample, 10, TimeUnit.MILLISECONDS)) {
+                if (accepted(queue, sample)) {
+                    return;
+                }
+                break;
+            }
+        }
+        throw new IllegalStateException("Online training is not running");
+    }
+
+    /**
+     * check whether an enqueued sample is trained. if the training stopped in
+     * the meantime the sample is taken back unless the training thread already
+     * took it, in which case it is still trained before the thread ends.
+     * @param queue the queue
+     * @param sample the enqueued sample
+     * @return true if the sample is trained
+     */
+    private boolean accepted(BlockingQueue<Sample> queue, Sample sample) {
+        return running || !queue.remove(sample);
+    }
+
+    /**
+     * the latest published snapshot, initially the state of the trainer before training
+     * @return the model
+     */
+    public Model model() {
+        return snapshot.get();
+    }
+
+    /**
+     * number of samples trained so far
+     * @return trained samples
+     */
+    public long samples() {
+        return samples;
+    }
+
+    /**
+     * mean error of the last micro-batch
+     * @return error or NaN if nothing has been trained yet
+     */
+    public double error() {
+        return error;
+    }
+
+    /**
+     * wait until all samples of the spliterator have been trained
+     * and the final snapshot has been published
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IllegalStateException if the training failed
+     */
+    public void await() throws InterruptedException {
+        final Thread thread;
+        synchronized (this) {
+            thread = this.thread;
+        }
+        if (thread != null) {
+            thread.join();
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Online training failed", failure);
+        }
+    }
+
+    /**
+     * stop the training thread after training all queued samples (or after the current
+     * micro-batch of a spliterator) and publish a final snapshot
+     * @throws IllegalStateException if the training failed
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private BlockingQueue<Sample> queue() {
+        final BlockingQueue<Sample> queue = this.queue;
+        if (queue == null) {
+            throw new IllegalStateException("Online training is not reading from a queue");
+        }
+        return queue;
+    }
+
+    private void run(Source source) {
+        final double[] inputs = new double[microBatchSize * inputSize];
+        final double[] expected = new double[microBatchSize * expectedSize];
+        long published = System.nanoTime();
+        long trained = 0L;
+        try {
+            for (int rows = source.fill(inputs, expected); rows >= 0; rows = source.fill(inputs, expected)) {
+                if (rows == 0) {
+                    continue;
+                }
+                error = trainer.train(inputs, expected, rows, parallel);
+                trained += rows;
+                samples = trained;
+                if (System.nanoTime() - published >= publishNanos) {
+                    publish();
+                    published = System.nanoTime();
+                }
+            }
+            publish();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            failure = e;
+        } finally {
+            running = false;
+        }
+    }
+
+    private void copy(Sample sample, double[] inputs, double[] expected, int row) {
+        check(sample);
+        System.arraycopy(sample.input, 0, inputs, row * inputSize, inputSize);
+        System.arraycopy(sample.expected, 0, expected, row * expectedSize, expectedSize);
+    }
+
+    private Sample check(Sample sample) {
+        if (sample.input.length != inputSize || sample.expected.length != expectedSize) {
+            throw new IllegalArgumentException("Expected samples of " + inputSize + " input and "
+                    + expectedSize + " expected values");
+        }
+        return sample;
+    }
+
+    private void publish() {
+        final Model model = trainer.toModel();
+        snapshot.set(model);
+        publisher.accept(model);
+    }
+
+    /**
+     * source of micro-batches for the training thread
+     */
+    private interface Source {
+
+        /**
+         * copy the next micro-batch into the given row-major buffers
+         * @param inputs buffer for the input values
+         * @param expected buffer for the expected values
+         * @return number of rows, 0 if none are available yet or -1 at the end
+         */
+        int fill(double[] inputs, double[] expected) throws InterruptedException;
+    }
+
+    /**
+     * a labeled sample
+     */
+    public static final class Sample {
+
+        // the input values
+        private final double[] input;
+        // the expected values
+        private final double[] expected;
+
+        private Sample(double[] input, double[] expected) {
+            this.input = input;
+            this.expected = expected;
+        }
+
+        /**
+         * create a sample without copying the arrays
+         * @param input the input values
+         * @param expected the expected values
+         * @return the sample
+         */
+        public static Sample of(double[] input, double[] expected) {
+            return new Sample(input, expected);
+        }
+    }
+}
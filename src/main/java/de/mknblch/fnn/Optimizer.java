@@ -0,0 +1,103 @@
+package de.mknblch.fnn;
+
+/**
+ * update rule which applies gradients to the parameters of a {@link Trainer}.
+ * the trainer creates one {@link Updater} per bias and weight array once, so
+ * per-parameter state is allocated up front and updates stay allocation free.
+ *
+ * @author mknblch
+ */
+public interface Optimizer {
+
+    /**
+     * create the updater (and its state) for a parameter array
+     * @param size number of parameters in the array
+     * @return a new updater
+     */
+    Updater create(int size);
+
+    /**
+     * effective learning rate of an update step. called once per update
+     * before the updaters are applied.
+     * @param rate the learning rate
+     * @param step number of the update step starting at 1
+     * @return the rate passed to the updaters
+     */
+    default double rate(double rate, long step) {
+        return rate;
+    }
+
+    /**
+     * plain gradient descent (default)
+     * @return the optimizer
+     */
+    static Optimizer sgd() {
+        return Optimizers.SGD;
+    }
+
+    /**
+     * gradient descent with momentum
+     * @param momentum decay of the velocity, usually 0.9
+     * @return the optimizer
+     */
+    static Optimizer momentum(double momentum) {
+        return new Optimizers.Momentum(momentum, false);
+    }
+
+    /**
+     * gradient descent with nesterov momentum
+     * @param momentum decay of the velocity, usually 0.9
+     * @return the optimizer
+     */
+    static Optimizer nesterov(double momentum) {
+        return new Optimizers.Momentum(momentum, true);
+    }
+
+    /**
+     * RMSProp with epsilon 1e-8
+     * @param decay decay of the mean squared gradient, usually 0.9
+     * @return the optimizer
+     */
+    static Optimizer rmsProp(double decay) {
+        return new Optimizers.RmsProp(decay, Optimizers.EPSILON);
+    }
+
+    /**
+     * Adam with beta1 0.9, beta2 0.999 and epsilon 1e-8
+     * @return the optimizer
+     */
+    static Optimizer adam() {
+        return adam(0.9, 0.999);
+    }
+
+    /**
+     * Adam with epsilon 1e-8
+     * @param beta1 decay of the mean gradient
+     * @param beta2 decay of the mean squared gradient
+     * @return the optimizer
+     */
+    static Optimizer adam(double beta1, double beta2) {
+        return new Optimizers.Adam(beta1, beta2, Optimizers.EPSILON);
+    }
+
+    /**
+     * applies gradients to a parameter array and holds the state of its parameters
+     */
+    interface Updater {
+
+        /**
+         * update a region of the parameters. the gradient of parameter
+         * offset + i is scale * gradient[gradientOffset + i]. regions
+         * passed concurrently must not overlap.
+         * @param params the parameter array
+         * @param offset offset of the first parameter
+         * @param gradient buffer holding the (unscaled) gradient
+         * @param gradientOffset offset of the first gradient value
+         * @param scale factor of the gradient values
+         * @param length number of parameters
+         * @param rate learning rate as returned by {@link Optimizer#rate(double, long)}
+         */
+        void update(double[] params, int offset, double[] gradient, int gradientOffset,
+                    double scale, int length, double rate);
+    }
+}
@@ -0,0 +1,122 @@
+package de.mknblch.fnn;
+
+/**
+ * implementations of the {@link Optimizer} factories
+ *
+ * @author mknblch
+ */
+final class Optimizers {
+
+    // added to denominators to avoid division by zero
+    static final double EPSILON = 1e-8;
+
+    // stateless gradient descent
+    static final Optimizer SGD = size -> Optimizers::descend;
+
+    private Optimizers() {
+    }
+
+    private static void descend(double[] params, int offset, double[] gradient, int gradientOffset,
+                                double scale, int length, double rate) {
+        Kernels.axpy(-rate * scale, gradient, gradientOffset, params, offset, length);
+    }
+
+    /**
+     * v = m * v + g, p -= rate * v (or rate * (g + m * v) with nesterov)
+     */
+    static final class Momentum implements Optimizer {
+
+        // decay of the velocity
+        private final double momentum;
+        // use the nesterov look-ahead
+        private final boolean nesterov;
+
+        Momentum(double momentum, boolean nesterov) {
+            this.momentum = momentum;
+            this.nesterov = nesterov;
+        }
+
+        @Override
+        public Updater create(int size) {
+            final double[] velocity = new double[size];
+            return (params, offset, gradient, gradientOffset, scale, length, rate) -> {
+                for (int i = 0; i < length; i++) {
+                    final double g = scale * gradient[gradientOffset + i];
+                    final double v = momentum * velocity[offset + i] + g;
+                    velocity[offset + i] = v;
+                    params[offset + i] -= rate * (nesterov ? g + momentum * v : v);
+                }
+            };
+        }
+    }
+
+    /**
+     * s = d * s + (1 - d) * g^2, p -= rate * g / (sqrt(s) + eps)
+     */
+    static final class RmsProp implements Optimizer {
+
+        // decay of the mean squared gradient
+        private final double decay;
+        // added to the denominator
+        private final double epsilon;
+
+        RmsProp(double decay, double epsilon) {
+            this.decay = decay;
+            this.epsilon = epsilon;
+        }
+
+        @Override
+        public Updater create(int size) {
+            final double[] square = new double[size];
+            return (params, offset, gradient, gradientOffset, scale, length, rate) -> {
+                for (int i = 0; i < length; i++) {
+                    final double g = scale * gradient[gradientOffset + i];
+                    final double s = decay * square[offset + i] + (1.0 - decay) * g * g;
+                    square[offset + i] = s;
+                    params[offset + i] -= rate * g / (Math.sqrt(s) + epsilon);
+                }
+            };
+        }
+    }
+
+    /**
+     * m = b1 * m + (1 - b1) * g, v = b2 * v + (1 - b2) * g^2, p -= rate_t * m / (sqrt(v) + eps)
+     * where the bias correction is folded into rate_t
+     */
+    static final class Adam implements Optimizer {
+
+        // decay of the mean gradient
+        private final double beta1;
+        // decay of the mean squared gradient
+        private final double beta2;
+        // added to the denominator
+        private final double epsilon;
+
+        Adam(double beta1, double beta2, double epsilon) {
+            this.beta1 = beta1;
+            this.beta2 = beta2;
+            this.epsilon = epsilon;
+        }
+
+        @Override
+        public double rate(double rate, long step) {
+            return rate * Math.sqrt(1.0 - Math.pow(beta2, step)) / (1.0 - Math.pow(beta1, step));
+        }
+
+        @Override
+        public Updater create(int size) {
+            final double[] mean = new double[size];
+            final double[] square = new double[size];
+            return (params, offset, gradient, gradientOffset, scale, length, rate) -> {
+                for (int i = 0; i < length; i++) {
+                    final double g = scale * gradient[gradientOffset + i];
+                    final double m = beta1 * mean[offset + i] + (1.0 - beta1) * g;
+                    final double v = beta2 * square[offset + i] + (1.0 - beta2) * g * g;
+                    mean[offset + i] = m;
+                    square[offset + i] = v;
+                    params[offset + i] -= rate * m / (Math.sqrt(v) + epsilon);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package de.mknblch.fnn;
+
+/**
+ * read-only view of a network which maps input values to output values.
+ * implementations are expected to be safe for concurrent use.
+ *
+ * @author mknblch
+ */
+public interface Predictor {
+
+    /**
+     * number of input units
+     * @return input units
+     */
+    int inputSize();
+
+    /**
+     * number of output units
+     * @return output units
+     */
+    int outputSize();
+
+    /**
+     * feed the network with given values and write the
+     * result into the given output array
+     * @param input the input values
+     * @param output array of at least {@link #outputSize()} elements
+     * @return the output array
+     */
+    double[] eval(double[] input, double[] output);
+
+    /**
+     * feed the network with given values
+     * @param input the input values
+     * @return newly allocated output of the network
+     */
+    default double[] eval(double[] input) {
+        return eval(input, new double[outputSize()]);
+    }
+
+    /**
+     * feed the network with a row-major batch of input values
+     * @param inputs array of at least rows * {@link #inputSize()} elements
+     * @param rows number of rows in the batch
+     * @param outputs array of at least rows * {@link #outputSize()} elements
+     * @return the output array
+     */
+    default double[] eval(double[] inputs, int rows, double[] outputs) {
+        final double[] input = new double[inputSize()];
+        final double[] output = new double[outputSize()];
+        for (int r = 0; r < rows; r++) {
+            System.arraycopy(inputs, r * input.length, input, 0, input.length);
+            eval(input, output);
+            System.arraycopy(output, 0, outputs, r * output.length, output.length);
+        }
+        return outputs;
+    }
+
+    /**
+     * feed the network with a batch of input arrays
+     * @param inputs array of input arrays
+     * @return newly allocated output arrays
+     */
+    default double[][] eval(double[][] inputs) {
+        final int in = inputSize();
+        final int out = outputSize();
+        final double[] flat = new double[inputs.length * in];
+        for (int r = 0; r < inputs.length; r++) {
+            System.arraycopy(inputs[r], 0, flat, r * in, in);
+        }
+        final double[] result = eval(flat, inputs.length, new double[inputs.length * out]);
+        final double[][] outputs = new double[inputs.length][];
+        for (int r = 0; r < inputs.length; r++) {
+            outputs[r] = new double[out];
+            System.arraycopy(result, r * out, outputs[r], 0, out);
+        }
+        return outputs;
+    }
+
+    /**
+     * feed the network with all input rows of the data set
+     * @param dataSet the data set
+     * @return newly allocated row-major output values
+     */
+    default double[] eval(FlatDataSet dataSet) {
+        return eval(dataSet.inputBuffer(), dataSet.size(), new double[dataSet.size() * outputSize()]);
+    }
+}
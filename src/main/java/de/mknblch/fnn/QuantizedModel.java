@@ -0,0 +1,168 @@
+package de.mknblch.fnn;
+
+/**
+ * Immutable inference-only model with int8 weights. Weights are quantized
+ * symmetrically with one scale factor per neuron. The values entering a layer
+ * are quantized per evaluation, so the dot products accumulate in integers.
+ * Weights take an eighth of the memory of the double model.
+ *
+ * @author mknblch
+ */
+public final class QuantizedModel implements Predictor {
+
+    // largest quantized magnitude
+    static final int RANGE = 127;
+
+    // number of units per layer including input and output layers
+    final int[] sizes;
+    // activations per layer (index 0 is the input layer and unused)
+    private final Activation[] activations;
+    // biases per layer (kept in double precision)
+    private final double[][] bias;
+    // quantized neuron-major weights per layer
+    private final byte[][] weights;
+    // scale factor of the weights of each neuron per layer
+    private final double[][] scales;
+    // lazily created buffers for intermediate values
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(this::newScratch);
+
+    private QuantizedModel(int[] sizes, Activation[] activations, double[][] bias, byte[][] weights, double[][] scales) {
+        this.sizes = sizes;
+        this.activations = activations;
+        this.bias = bias;
+        this.weights = weights;
+        this.scales = scales;
+    }
+
+    /**
+     * quantize the weights of a trained model
+     * @param model the model
+     * @return the quantized model
+     */
+    public static QuantizedModel quantize(Model model) {
+        final int[] sizes = model.sizes.clone();
+        final int layers = sizes.length;
+        final double[][] bias = new double[layers][];
+        final byte[][] weights = new byte[layers][];
+        final double[][] scales = new double[layers][];
+        bias[0] = new double[0];
+        weights[0] = new byte[0];
+        scales[0] = new double[0];
+        for (int l = 1; l < layers; l++) {
+            final int inputs = sizes[l - 1];
+            final double[] w = model.weights[l];
+            bias[l] = model.bias[l].clone();
+            weights[l] = new byte[w.length];
+            scales[l] = new double[sizes[l]];
+            for (int j = 0; j < sizes[l]; j++) {
+                final int offset = j * inputs;
+                final double scale = scale(w, offset, inputs);
+                scales[l][j] = scale;
+                quantize(w, offset, inputs, scale, weights[l], offset);
+            }
+        }
+        return new QuantizedModel(sizes, model.activations.clone(), bias, weights, scales);
+    }
+
+    @Override
+    public int inputSize() {
+        return sizes[0];
+    }
+
+    @Override
+    public int outputSize() {
+        return sizes[sizes.length - 1];
+    }
+
+    /**
+     * number of hidden layers
+     * @return number of hidden layers
+     */
+    public int numLayer() {
+        return sizes.length - 2;
+    }
+
+    @Override
+    public double[] eval(double[] input, double[] output) {
+        final Scratch scratch = this.scratch.get();
+        final int last = sizes.length - 1;
+        double[] precursor = input;
+        for (int l = 1; l <= last; l++) {
+            final double[] out = l == last ? output : scratch.values[l];
+            final int inputs = sizes[l - 1];
+            final double inputScale = scale(precursor, 0, inputs);
+            quantize(precursor, 0, inputs, inputScale, scratch.quantized, 0);
+            final byte[] w = weights[l];
+            for (int j = 0; j < sizes[l]; j++) {
+                final long acc = dot(scratch.quantized, w, j * inputs, inputs);
+                out[j] = bias[l][j] + acc * scales[l][j] * inputScale;
+            }
+            activations[l].apply(out, 0, sizes[l]);
+            precursor = out;
+        }
+        return output;
+    }
+
+    /**
+     * integer dot product of quantized values
+     * @param values quantized input values
+     * @param weights quantized weights
+     * @param offset offset of the first weight
+     * @param length number of elements
+     * @return the accumulated product (long, since int overflows beyond ~133k inputs)
+     */
+    private static long dot(byte[] values, byte[] weights, int offset, int length) {
+        long acc = 0;
+        for (int i = 0; i < length; i++) {
+            acc += values[i] * weights[offset + i];
+        }
+        return acc;
+    }
+
+    /**
+     * symmetric scale factor which maps the largest magnitude onto {@link #RANGE}
+     * @param values the values
+     * @param offset offset of the first value
+     * @param length number of values
+     * @return the scale factor (1 if all values are 0)
+     */
+    private static double scale(double[] values, int offset, int length) {
+        double max = 0.0;
+        for (int i = 0; i < length; i++) {
+            max = Math.max(max, Math.abs(values[offset + i]));
+        }
+        return max == 0.0 ? 1.0 : max / RANGE;
+    }
+
+    private static void quantize(double[] values, int offset, int length, double scale, byte[] target, int targetOffset) {
+        final double factor = 1.0 / scale;
+        for (int i = 0; i < length; i++) {
+            target[targetOffset + i] = (byte) Math.round(values[offset + i] * factor);
+        }
+    }
+
+    private Scratch newScratch() {
+        return new Scratch(sizes);
+    }
+
+    /**
+     * intermediate buffers for a single evaluating thread
+     */
+    private static final class Scratch {
+
+        // values of the hidden layers
+        private final double[][] values;
+        // quantized input values of the current layer
+        private final byte[] quantized;
+
+        private Scratch(int[] sizes) {
+            values = new double[sizes.length][];
+            int width = 0;
+            for (int i = 0; i < sizes.length; i++) {
+                values[i] = new double[i == 0 || i == sizes.length - 1 ? 0 : sizes[i]];
+                width = Math.max(width, sizes[i]);
+            }
+            quantized = new byte[width];
+        }
+    }
+}
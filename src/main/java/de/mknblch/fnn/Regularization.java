@@ -0,0 +1,146 @@
+package de.mknblch.fnn;
+
+import java.util.SplittableRandom;
+
+/**
+ * Regularization of a {@link Trainer}. Supports inverted dropout on the hidden
+ * layers, L2 weight decay and clipping of the global gradient norm. Dropout masks
+ * are drawn into buffers allocated once per trainer, weight decay is folded into
+ * the weight update as a factor of the old weights (decoupled from the optimizer
+ * state, which is equivalent for plain gradient descent), and the clipping factor
+ * is folded into the scale of the gradient.
+ *
+ * <pre>
+ *     Trainer.builder(784, 10)
+ *         .withRegularization(Regularization.none()
+ *             .withDropout(0.2)
+ *             .withWeightDecay(1e-4)
+ *             .withGradientClipping(5.0))
+ * </pre>
+ *
+ * @author mknblch
+ */
+public final class Regularization {
+
+    // no regularization (default)
+    private static final Regularization NONE = new Regularization(0.0, 0.0, Double.POSITIVE_INFINITY);
+
+    // probability of dropping a hidden unit
+    final double dropout;
+    // L2 weight decay coefficient
+    final double weightDecay;
+    // maximum norm of the gradient of an update
+    final double maxNorm;
+
+    private Regularization(double dropout, double weightDecay, double maxNorm) {
+        this.dropout = dropout;
+        this.weightDecay = weightDecay;
+        this.maxNorm = maxNorm;
+    }
+
+    /**
+     * no regularization (default)
+     * @return the regularization
+     */
+    public static Regularization none() {
+        return NONE;
+    }
+
+    /**
+     * derive a regularization which drops hidden units during training. kept
+     * units are scaled by 1 / (1 - rate), so evaluation needs no correction.
+     * @param rate probability of dropping a unit in [0, 1)
+     * @return a new regularization
+     */
+    public Regularization withDropout(double rate) {
+        if (!(rate >= 0.0 && rate < 1.0)) {
+            throw new IllegalArgumentException("Invalid dropout rate " + rate);
+        }
+        return new Regularization(rate, weightDecay, maxNorm);
+    }
+
+    /**
+     * derive a regularization which shrinks the weights by rate * lambda * w
+     * in every update. biases are not decayed.
+     * @param lambda the decay coefficient
+     * @return a new regularization
+     */
+    public Regularization withWeightDecay(double lambda) {
+        if (!(lambda >= 0.0)) {
+            throw new IllegalArgumentException("Invalid weight decay " + lambda);
+        }
+        return new Regularization(dropout, lambda, maxNorm);
+    }
+
+    /**
+     * derive a regularization which scales the gradient of an update down to the
+     * given norm if it is larger. in per-sample training the deltas of all layers
+     * are computed before the first update, so backward step and update are not
+     * fused and the weights are swept twice.
+     * @param maxNorm maximum norm of the gradient
+     * @return a new regularization
+     */
+    public Regularization withGradientClipping(double maxNorm) {
+        if (!(maxNorm > 0.0)) {
+            throw new IllegalArgumentException("Invalid gradient norm " + maxNorm);
+        }
+        return new Regularization(dropout, weightDecay, maxNorm);
+    }
+
+    /**
+     * whether the gradient is clipped
+     */
+    boolean clipping() {
+        return maxNorm != Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * factor of the weights in an update
+     * @param rate learning rate of the update
+     * @return 1 - rate * lambda
+     */
+    double decay(double rate) {
+        return 1.0 - rate * weightDecay;
+    }
+
+    /**
+     * factor which scales a gradient down to the maximum norm
+     * @param norm norm of the gradient
+     * @return the factor
+     */
+    double clip(double norm) {
+        return norm > maxNorm ? maxNorm / norm : 1.0;
+    }
+
+    /**
+     * draw a dropout mask and apply it to the output values of a hidden layer
+     * @param values output values, replaced by the masked values
+     * @param activated receives the unmasked values for the derivative
+     * @param mask receives 0 for dropped and 1 / (1 - rate) for kept units
+     * @param random the random generator of the calling thread
+     */
+    void drop(double[] values, double[] activated, double[] mask, SplittableRandom random) {
+        final double keep = 1.0 / (1.0 - dropout);
+        for (int i = 0; i < values.length; i++) {
+            final double m = random.nextDouble() < dropout ? 0.0 : keep;
+            activated[i] = values[i];
+            mask[i] = m;
+            values[i] *= m;
+        }
+    }
+
+    /**
+     * multiply the deltas of a hidden layer by the derivative of its dropout and its activation
+     * @param activation the activation of the layer
+     * @param activated the unmasked output values
+     * @param mask the dropout mask
+     * @param delta deltas with respect to the masked output values, replaced
+     *              by the deltas with respect to the weighted sums
+     */
+    static void derivative(Activation activation, double[] activated, double[] mask, double[] delta) {
+        for (int i = 0; i < delta.length; i++) {
+            delta[i] *= mask[i];
+        }
+        activation.derivative(activated, delta, delta.length);
+    }
+}
@@ -38,7 +38,8 @@ public class ScaleData {
                 cmax = v;
             }
         }
-        final double p = (max - min) / (cmax - cmin);
+        // constant values are mapped onto min
+        final double p = cmax == cmin ? 0.0 : (max - min) / (cmax - cmin);
         for (int i = fromIndex; i < end; i++) {
             out[i + targetOffset] = min + p * (data[i] - cmin);
         }
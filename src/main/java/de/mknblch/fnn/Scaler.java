@@ -0,0 +1,264 @@
+package de.mknblch.fnn;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Per column scaling of input values fitted once on a (training) data set,
+ * so the same transformation can be applied to test data and at serving time.
+ * Each column is mapped by {@code x' = x * factor + shift}. Fitting and
+ * applying on a {@link FlatDataSet} run in parallel over chunks of rows.
+ *
+ * <pre>
+ *     Scaler scaler = Scaler.fitMinMax(train, -1.0, 1.0);
+ *     FlatDataSet scaled = scaler.apply(train);
+ *     scaler.applyInPlace(test);
+ *     scaler.apply(input);
+ * </pre>
+ *
+ * @author mknblch
+ */
+public final class Scaler {
+
+    // number of rows processed by a single task
+    static final int CHUNK_ROWS = 1024;
+
+    // factor per column
+    private final double[] factor;
+    // shift per column
+    private final double[] shift;
+
+    private Scaler(double[] factor, double[] shift) {
+        this.factor = factor;
+        this.shift = shift;
+    }
+
+    /**
+     * fit a scaler which maps the range of each input column onto [min, max].
+     * constant columns are mapped onto min.
+     * @param dataSet the data set
+     * @param min lower bound of the scaled values
+     * @param max upper bound of the scaled values
+     * @return the scaler
+     */
+    public static Scaler fitMinMax(DataSet dataSet, double min, double max) {
+        final Statistics statistics = Statistics.of(dataSet);
+        final int columns = statistics.min.length;
+        final double[] factor = new double[columns];
+        final double[] shift = new double[columns];
+        for (int c = 0; c < columns; c++) {
+            final double range = statistics.max[c] - statistics.min[c];
+            factor[c] = range == 0.0 ? 0.0 : (max - min) / range;
+            shift[c] = min - factor[c] * statistics.min[c];
+        }
+        return new Scaler(factor, shift);
+    }
+
+    /**
+     * fit a scaler which standardizes each input column to mean 0 and
+     * standard deviation 1. constant columns are mapped onto 0.
+     * @param dataSet the data set
+     * @return the scaler
+     */
+    public static Scaler fitZScore(DataSet dataSet) {
+        final Statistics statistics = Statistics.of(dataSet);
+        final int columns = statistics.mean.length;
+        final double[] factor = new double[columns];
+        final double[] shift = new double[columns];
+        for (int c = 0; c < columns; c++) {
+            final double std = Math.sqrt(statistics.m2[c] / statistics.count);
+            factor[c] = std == 0.0 ? 0.0 : 1.0 / std;
+            shift[c] = -factor[c] * statistics.mean[c];
+        }
+        return new Scaler(factor, shift);
+    }
+
+    /**
+     * number of columns
+     * @return input values per row
+     */
+    public int size() {
+        return factor.length;
+    }
+
+    /**
+     * scale a row of input values in place
+     * @param values the input values
+     * @return the input values
+     */
+    public double[] apply(double[] values) {
+        apply(values, 0, 1);
+        return values;
+    }
+
+    /**
+     * scale a copy of the input values of a data set
+     * @param dataSet the data set (left unchanged)
+     * @return a new, scaled data set
+     */
+    public FlatDataSet apply(DataSet dataSet) {
+        return applyInPlace(FlatDataSet.copyOf(dataSet));
+    }
+
+    /**
+     * scale the input values of a data set in place
+     * @param flat the data set
+     * @return the same data set
+     */
+    public FlatDataSet applyInPlace(FlatDataSet flat) {
+        if (flat.inputSize() != factor.length) {
+            throw new IllegalArgumentException("Expected " + factor.length + " input values but got " + flat.inputSize());
+        }
+        final double[] inputs = flat.inputBuffer();
+        final int rows = flat.size();
+        IntStream.range(0, chunks(rows))
+                .parallel()
+                .forEach(c -> apply(inputs, c * CHUNK_ROWS, Math.min(CHUNK_ROWS, rows - c * CHUNK_ROWS)));
+        return flat;
+    }
+
+    /**
+     * scale consecutive rows of a row-major array in place
+     * @param values row-major input values
+     * @param row index of the first row
+     * @param rows number of rows
+     */
+    private void apply(double[] values, int row, int rows) {
+        final int columns = factor.length;
+        for (int r = row; r < row + rows; r++) {
+            final int offset = r * columns;
+            for (int c = 0; c < columns; c++) {
+                values[offset + c] = values[offset + c] * factor[c] + shift[c];
+            }
+        }
+    }
+
+    private static int chunks(int rows) {
+        return (rows + CHUNK_ROWS - 1) / CHUNK_ROWS;
+    }
+
+    /**
+     * mergeable per column statistics of the input values
+     */
+    static final class Statistics {
+
+        // number of rows
+        long count;
+        // minimum per column
+        final double[] min;
+        // maximum per column
+        final double[] max;
+        // mean per column
+        final double[] mean;
+        // sum of squared differences from the mean per column
+        final double[] m2;
+
+        Statistics(int columns) {
+            min = new double[columns];
+            max = new double[columns];
+            mean = new double[columns];
+            m2 = new double[columns];
+            Arrays.fill(min, Double.POSITIVE_INFINITY);
+            Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        }
+
+        /**
+         * collect the statistics of the input values. a {@link FlatDataSet} is
+         * processed in parallel chunks, other data sets in a single streaming pass.
+         * @param dataSet the data set
+         * @return the statistics
+         */
+        static Statistics of(DataSet dataSet) {
+            if (dataSet instanceof FlatDataSet) {
+                final FlatDataSet flat = (FlatDataSet) dataSet;
+                final double[] inputs = flat.inputBuffer();
+                final int columns = flat.inputSize();
+                final int rows = flat.size();
+                if (rows == 0) {
+                    throw new IllegalArgumentException("Empty data set");
+                }
+                return IntStream.range(0, chunks(rows))
+                        .parallel()
+                        .mapToObj(c -> chunk(inputs, columns, c * CHUNK_ROWS, Math.min(CHUNK_ROWS, rows - c * CHUNK_ROWS)))
+                        .reduce(Statistics::merge)
+                        .get();
+            }
+            Statistics statistics = null;
+            try (DataSet.Cursor cursor = dataSet.cursor()) {
+                while (cursor.next()) {
+                    if (statistics == null) {
+                        statistics = new Statistics(cursor.inputSize());
+                    }
+                    statistics.add(cursor.input(), cursor.inputOffset());
+                }
+            }
+            if (statistics == null) {
+                throw new IllegalArgumentException("Empty data set");
+            }
+            return statistics;
+        }
+
+        /**
+         * add a single row (welford's online algorithm)
+         * @param values buffer holding the row
+         * @param offset offset of the first value
+         */
+        void add(double[] values, int offset) {
+            count++;
+            for (int c = 0; c < mean.length; c++) {
+                final double x = values[offset + c];
+                min[c] = Math.min(min[c], x);
+                max[c] = Math.max(max[c], x);
+                final double d = x - mean[c];
+                mean[c] += d / count;
+                m2[c] += d * (x - mean[c]);
+            }
+        }
+
+        /**
+         * statistics of consecutive rows in two cache-resident passes
+         */
+        private static Statistics chunk(double[] values, int columns, int row, int rows) {
+            final Statistics s = new Statistics(columns);
+            s.count = rows;
+            for (int r = row; r < row + rows; r++) {
+                final int offset = r * columns;
+                for (int c = 0; c < columns; c++) {
+                    final double x = values[offset + c];
+                    s.min[c] = Math.min(s.min[c], x);
+                    s.max[c] = Math.max(s.max[c], x);
+                    s.mean[c] += x;
+                }
+            }
+            for (int c = 0; c < columns; c++) {
+                s.mean[c] /= rows;
+            }
+            for (int r = row; r < row + rows; r++) {
+                final int offset = r * columns;
+                for (int c = 0; c < columns; c++) {
+                    final double d = values[offset + c] - s.mean[c];
+                    s.m2[c] += d * d;
+                }
+            }
+            return s;
+        }
+
+        /**
+         * combine with the statistics of other rows (chan's parallel algorithm)
+         * @param other the other statistics
+         * @return itself
+         */
+        Statistics merge(Statistics other) {
+            final long n = count + other.count;
+            for (int c = 0; c < mean.length; c++) {
+                final double d = other.mean[c] - mean[c];
+                min[c] = Math.min(min[c], other.min[c]);
+                max[c] = Math.max(max[c], other.max[c]);
+                mean[c] += d * other.count / n;
+                m2[c] += other.m2[c] + d * d * count * other.count / n;
+            }
+            count = n;
+            return this;
+        }
+    }
+}
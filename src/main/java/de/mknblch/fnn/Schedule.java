@@ -0,0 +1,60 @@
+package de.mknblch.fnn;
+
+/**
+ * learning rate schedule applied by {@link Training} before each epoch
+ *
+ * @author mknblch
+ */
+public interface Schedule {
+
+    /**
+     * learning rate of an epoch
+     * @param rate the initial learning rate
+     * @param epoch the epoch starting at 0
+     * @return the learning rate of the epoch
+     */
+    double rate(double rate, int epoch);
+
+    /**
+     * keep the initial learning rate
+     * @return the schedule
+     */
+    static Schedule constant() {
+        return (rate, epoch) -> rate;
+    }
+
+    /**
+     * multiply the rate by a factor every few epochs
+     * @param epochs number of epochs per step
+     * @param factor factor per step
+     * @return the schedule
+     */
+    static Schedule step(int epochs, double factor) {
+        if (epochs < 1) {
+            throw new IllegalArgumentException("Invalid step size " + epochs);
+        }
+        return (rate, epoch) -> rate * Math.pow(factor, epoch / epochs);
+    }
+
+    /**
+     * multiply the rate by a factor after each epoch
+     * @param decay factor per epoch
+     * @return the schedule
+     */
+    static Schedule exponential(double decay) {
+        return (rate, epoch) -> rate * Math.pow(decay, epoch);
+    }
+
+    /**
+     * anneal the rate along a half cosine down to a minimum
+     * @param epochs number of epochs until the minimum is reached
+     * @param min the minimum rate
+     * @return the schedule
+     */
+    static Schedule cosine(int epochs, double min) {
+        if (epochs < 1) {
+            throw new IllegalArgumentException("Invalid number of epochs " + epochs);
+        }
+        return (rate, epoch) -> min + (rate - min) * 0.5 * (1.0 + Math.cos(Math.PI * Math.min(epoch, epochs) / epochs));
+    }
+}
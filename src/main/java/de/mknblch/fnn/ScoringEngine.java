@@ -0,0 +1,417 @@
+package de.mknblch.fnn;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process micro-batching front-end for a thread-safe {@link Predictor}.
+ * Single input vectors are queued and coalesced by a fixed number of worker
+ * threads into batches which are bounded by a maximum size and by the time the
+ * oldest request may wait. Each batch is scored with one batched evaluation.
+ * Callers only block on the returned future, so they may be virtual threads.
+ *
+ * <pre>
+ *     try (ScoringEngine engine = ScoringEngine.builder(model)
+ *             .withMaxBatchSize(64)
+ *             .withMaxWait(2, TimeUnit.MILLISECONDS)
+ *             .build()) {
+ *         double[] output = engine.submit(input).join();
+ *     }
+ * </pre>
+ *
+ * @author mknblch
+ */
+public final class ScoringEngine implements AutoCloseable {
+
+    // number of latencies each worker keeps for percentiles
+    static final int LATENCY_WINDOW = 4096;
+
+    // the predictor
+    private final Predictor predictor;
+    // maximum number of requests per batch
+    private final int maxBatchSize;
+    // maximum time the oldest request of a batch waits for more requests
+    private final long maxWaitNanos;
+    // pending requests
+    private final BlockingQueue<Request> queue;
+    // the workers
+    private final Worker[] workers;
+    // the worker threads
+    private final Thread[] threads;
+    // creation time
+    private final long started = System.nanoTime();
+    // false after close
+    private volatile boolean running = true;
+
+    private ScoringEngine(Predictor predictor, int maxBatchSize, long maxWaitNanos, int queueCapacity, int workers) {
+        this.predictor = predictor;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = maxWaitNanos;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.workers = new Worker[workers];
+        this.threads = new Thread[workers];
+        for (int i = 0; i < workers; i++) {
+            this.workers[i] = new Worker();
+            threads[i] = new Thread(this.workers[i], "scoring-engine-" + i);
+            threads[i].setDaemon(true);
+        }
+    }
+
+    /**
+     * create a new Builder
+     * @param predictor a predictor which is safe for concurrent use
+     * @return a new builder
+     */
+    public static Builder builder(Predictor predictor) {
+        return new Builder(predictor);
+    }
+
+    /**
+     * queue an input vector for scoring. the input must not be
+     * modified until the returned future is completed.
+     * @param input the input values
+     * @return future of the output values. fails with a {@link RejectedExecutionException}
+     * if the queue is full or the engine is closed
+     */
+    public CompletableFuture<double[]> submit(double[] input) {
+        if (input.length != predictor.inputSize()) {
+            throw new IllegalArgumentException("Expected " + predictor.inputSize() + " input values but got " + input.length);
+        }
+        final Request request = new Request(input);
+        if (!running) {
+            request.future.completeExceptionally(new RejectedExecutionException("Scoring engine is closed"));
+        } else if (!queue.offer(request)) {
+            request.future.completeExceptionally(new RejectedExecutionException("Scoring queue is full"));
+        } else if (!running && queue.remove(request)) {
+            // closed concurrently, the workers may already be gone
+            request.future.completeExceptionally(new RejectedExecutionException("Scoring engine is closed"));
+        }
+        return request.future;
+    }
+
+    /**
+     * latency and throughput of the engine since its creation.
+     * percentiles are calculated over the most recent requests of each worker.
+     * @return the statistics
+     */
+    public Stats stats() {
+        long requests = 0;
+        long batches = 0;
+        long[] latencies = new long[0];
+        for (Worker worker : workers) {
+            synchronized (worker) {
+                final int window = (int) Math.min(worker.requests, LATENCY_WINDOW);
+                final int offset = latencies.length;
+                latencies = Arrays.copyOf(latencies, offset + window);
+                System.arraycopy(worker.latencies, 0, latencies, offset, window);
+                requests += worker.requests;
+                batches += worker.batches;
+            }
+        }
+        Arrays.sort(latencies);
+        return new Stats(requests, batches, percentile(latencies, 0.5), percentile(latencies, 0.99),
+                requests * 1e9 / Math.max(1L, System.nanoTime() - started));
+    }
+
+    /**
+     * score all queued requests, stop the workers and wait for their termination.
+     * requests submitted afterwards are rejected.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // requests which raced with close
+        for (Request request = queue.poll(); request != null; request = queue.poll()) {
+            request.future.completeExceptionally(new CancellationException("Scoring engine is closed"));
+        }
+    }
+
+    private ScoringEngine start() {
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        return this;
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0L;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(quantile * sorted.length) - 1)];
+    }
+
+    /**
+     * a queued input vector
+     */
+    private static final class Request {
+
+        // the input values
+        private final double[] input;
+        // result of the request
+        private final CompletableFuture<double[]> future = new CompletableFuture<>();
+        // time of submission
+        private final long submitted = System.nanoTime();
+
+        private Request(double[] input) {
+            this.input = input;
+        }
+    }
+
+    /**
+     * collects batches from the queue and scores them with its own buffers
+     */
+    private final class Worker implements Runnable {
+
+        // requests of the current batch
+        private final Request[] batch = new Request[maxBatchSize];
+        // row-major input values of the current batch
+        private final double[] inputs = new double[maxBatchSize * predictor.inputSize()];
+        // row-major output values of the current batch
+        private final double[] outputs = new double[maxBatchSize * predictor.outputSize()];
+        // ring buffer of the most recent latencies
+        private final long[] latencies = new long[LATENCY_WINDOW];
+        // number of scored requests
+        private long requests = 0;
+        // number of scored batches
+        private long batches = 0;
+
+        @Override
+        public void run() {
+            try {
+                while (running || !queue.isEmpty()) {
+                    final Request first = queue.poll(10, TimeUnit.MILLISECONDS);
+                    if (first != null) {
+                        score(collect(first));
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * add requests to the batch until it is full or the first request waited long enough
+         * @param first the first request
+         * @return size of the batch
+         */
+        private int collect(Request first) throws InterruptedException {
+            final long deadline = first.submitted + maxWaitNanos;
+            batch[0] = first;
+            int size = 1;
+            while (size < maxBatchSize) {
+                Request next = queue.poll();
+                if (next == null) {
+                    final long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0L || (next = queue.poll(remaining, TimeUnit.NANOSECONDS)) == null) {
+                        break;
+                    }
+                }
+                batch[size++] = next;
+            }
+            return size;
+        }
+
+        private void score(int size) {
+            final int in = predictor.inputSize();
+            final int out = predictor.outputSize();
+            for (int r = 0; r < size; r++) {
+                System.arraycopy(batch[r].input, 0, inputs, r * in, in);
+            }
+            try {
+                predictor.eval(inputs, size, outputs);
+            } catch (Throwable e) {
+                // complete the batch and keep the worker alive for further requests
+                for (int r = 0; r < size; r++) {
+                    batch[r].future.completeExceptionally(e);
+                    batch[r] = null;
+                }
+                return;
+            }
+            final long now = System.nanoTime();
+            synchronized (this) {
+                for (int r = 0; r < size; r++) {
+                    latencies[(int) (requests++ % LATENCY_WINDOW)] = now - batch[r].submitted;
+                }
+                batches++;
+            }
+            for (int r = 0; r < size; r++) {
+                batch[r].future.complete(Arrays.copyOfRange(outputs, r * out, (r + 1) * out));
+                batch[r] = null;
+            }
+        }
+    }
+
+    /**
+     * latency and throughput statistics
+     */
+    public static final class Stats {
+
+        // number of scored requests
+        private final long requests;
+        // number of scored batches
+        private final long batches;
+        // median latency
+        private final long p50Nanos;
+        // 99th percentile latency
+        private final long p99Nanos;
+        // requests per second
+        private final double throughput;
+
+        private Stats(long requests, long batches, long p50Nanos, long p99Nanos, double throughput) {
+            this.requests = requests;
+            this.batches = batches;
+            this.p50Nanos = p50Nanos;
+            this.p99Nanos = p99Nanos;
+            this.throughput = throughput;
+        }
+
+        /**
+         * number of scored requests
+         * @return requests
+         */
+        public long requests() {
+            return requests;
+        }
+
+        /**
+         * number of scored batches
+         * @return batches
+         */
+        public long batches() {
+            return batches;
+        }
+
+        /**
+         * mean number of requests per batch
+         * @return mean batch size
+         */
+        public double meanBatchSize() {
+            return batches == 0 ? 0.0 : (double) requests / batches;
+        }
+
+        /**
+         * median time from submission to completion
+         * @return latency in nanoseconds
+         */
+        public long p50Nanos() {
+            return p50Nanos;
+        }
+
+        /**
+         * 99th percentile of the time from submission to completion
+         * @return latency in nanoseconds
+         */
+        public long p99Nanos() {
+            return p99Nanos;
+        }
+
+        /**
+         * scored requests per second since the engine was created
+         * @return throughput
+         */
+        public double throughput() {
+            return throughput;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Stats{requests=%d, batches=%d, meanBatchSize=%.1f, p50=%.3fms, p99=%.3fms, throughput=%.0f/s}",
+                    requests, batches, meanBatchSize(), p50Nanos / 1e6, p99Nanos / 1e6, throughput);
+        }
+    }
+
+    /**
+     * builder for the engine
+     */
+    public static final class Builder {
+
+        // the predictor
+        private final Predictor predictor;
+        // maximum number of requests per batch
+        private int maxBatchSize = 64;
+        // maximum time the oldest request of a batch waits for more requests
+        private long maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(1);
+        // maximum number of pending requests
+        private int queueCapacity = 1 << 16;
+        // number of worker threads
+        private int workers = Runtime.getRuntime().availableProcessors();
+
+        private Builder(Predictor predictor) {
+            this.predictor = predictor;
+        }
+
+        /**
+         * set the maximum number of requests per batch (64 by default)
+         * @param maxBatchSize maximum batch size
+         * @return this builder
+         */
+        public Builder withMaxBatchSize(int maxBatchSize) {
+            if (maxBatchSize < 1) {
+                throw new IllegalArgumentException("Invalid batch size " + maxBatchSize);
+            }
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * set the maximum time a request waits for others to
+         * join its batch (1 millisecond by default)
+         * @param time the time
+         * @param unit unit of the time
+         * @return this builder
+         */
+        public Builder withMaxWait(long time, TimeUnit unit) {
+            if (time < 0) {
+                throw new IllegalArgumentException("Invalid wait time " + time);
+            }
+            this.maxWaitNanos = unit.toNanos(time);
+            return this;
+        }
+
+        /**
+         * set the maximum number of pending requests. further requests are rejected.
+         * @param queueCapacity capacity of the queue
+         * @return this builder
+         */
+        public Builder withQueueCapacity(int queueCapacity) {
+            if (queueCapacity < 1) {
+                throw new IllegalArgumentException("Invalid queue capacity " + queueCapacity);
+            }
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * set the number of worker threads (number of available processors by default)
+         * @param workers number of workers
+         * @return this builder
+         */
+        public Builder withWorkers(int workers) {
+            if (workers < 1) {
+                throw new IllegalArgumentException("Invalid number of workers " + workers);
+            }
+            this.workers = workers;
+            return this;
+        }
+
+        /**
+         * create and start the engine
+         * @return the running engine
+         */
+        public ScoringEngine build() {
+            return new ScoringEngine(predictor, maxBatchSize, maxWaitNanos, queueCapacity, workers).start();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package de.mknblch.fnn;
+
+import java.util.Arrays;
+
+/**
+ * Sparse input values stored as pairs of strictly ascending indices and their
+ * values, e.g. one-hot or bag-of-words features. Evaluating or training with a
+ * sparse vector only touches the weights of the non-zero inputs in the first
+ * layer. The arrays are not copied.
+ *
+ * @author mknblch
+ */
+public final class SparseVector {
+
+    // number of (dense) input values
+    final int size;
+    // ascending indices of the non-zero values
+    final int[] indices;
+    // the non-zero values
+    final double[] values;
+
+    private SparseVector(int size, int[] indices, double[] values) {
+        this.size = size;
+        this.indices = indices;
+        this.values = values;
+    }
+
+    /**
+     * create a sparse vector from index / value pairs
+     * @param size number of (dense) input values
+     * @param indices strictly ascending indices
+     * @param values values of the indices
+     * @return the sparse vector
+     */
+    public static SparseVector of(int size, int[] indices, double[] values) {
+        if (indices.length != values.length) {
+            throw new IllegalArgumentException("Got " + indices.length + " indices but " + values.length + " values");
+        }
+        for (int k = 0; k < indices.length; k++) {
+            if (indices[k] < 0 || indices[k] >= size || (k > 0 && indices[k] <= indices[k - 1])) {
+                throw new IllegalArgumentException("Invalid index " + indices[k] + " at " + k);
+            }
+        }
+        return new SparseVector(size, indices, values);
+    }
+
+    /**
+     * collect the non-zero values of a dense array
+     * @param dense the dense values
+     * @return the sparse vector
+     */
+    public static SparseVector of(double[] dense) {
+        int nnz = 0;
+        for (double v : dense) {
+            if (v != 0.0) {
+                nnz++;
+            }
+        }
+        final int[] indices = new int[nnz];
+        final double[] values = new double[nnz];
+        for (int i = 0, k = 0; i < dense.length; i++) {
+            if (dense[i] != 0.0) {
+                indices[k] = i;
+                values[k++] = dense[i];
+            }
+        }
+        return new SparseVector(dense.length, indices, values);
+    }
+
+    /**
+     * number of (dense) input values
+     * @return the size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * number of non-zero values
+     * @return the number of stored values
+     */
+    public int nnz() {
+        return indices.length;
+    }
+
+    /**
+     * index of the k-th non-zero value
+     * @param k position of the value
+     * @return the index
+     */
+    public int index(int k) {
+        return indices[k];
+    }
+
+    /**
+     * the k-th non-zero value
+     * @param k position of the value
+     * @return the value
+     */
+    public double value(int k) {
+        return values[k];
+    }
+
+    /**
+     * expand into a dense array
+     * @return a new array
+     */
+    public double[] toDense() {
+        final double[] dense = new double[size];
+        for (int k = 0; k < indices.length; k++) {
+            dense[indices[k]] = values[k];
+        }
+        return dense;
+    }
+
+    /**
+     * sum of the squared values
+     * @return squared euclidean norm
+     */
+    double squaredNorm() {
+        return Kernels.dot(values, 0, values, 0, values.length);
+    }
+
+    @Override
+    public String toString() {
+        return "SparseVector{size=" + size + ", indices=" + Arrays.toString(indices)
+                + ", values=" + Arrays.toString(values) + "}";
+    }
+}
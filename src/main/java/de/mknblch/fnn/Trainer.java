@@ -1,10 +1,12 @@
 package de.mknblch.fnn;
 
-import java.security.SecureRandom;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.function.IntToDoubleFunction;
+import java.util.SplittableRandom;
+import java.util.StringJoiner;
 
 /**
  * Trainable Network
@@ -13,14 +15,57 @@ import java.util.function.IntToDoubleFunction;
  */
 public class Trainer extends FNN {
 
+    // minimum number of precursor units per block in parallel updates
+    static final int MIN_COLUMNS = 64;
+    // number of weights initialized by a single task
+    static final int INIT_CHUNK = 1 << 16;
+    // used to measure allocations of the training thread
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
     // layer array including input and output layers
     private final Layer[] layers;
     // learning rate
-    private final double rate;
+    private double rate;
     // number of iterations the training took
     private int iterations = -1;
     // pre-allocated delta array for weight & bias updates
     private double[][] delta;
+    // update rule for weights & biases
+    private final Optimizer optimizer;
+    // pre-allocated updaters (and optimizer state) for the biases per layer
+    private final Optimizer.Updater[] biasUpdaters;
+    // pre-allocated updaters (and optimizer state) for the weights per layer
+    private final Optimizer.Updater[] weightUpdaters;
+    // number of weight updates so far
+    private long steps = 0;
+    // receiver of training metrics
+    private final TrainingListener listener;
+    // true if metrics are measured
+    private final boolean instrumented;
+    // number of passes over a data set so far
+    private int epochs = 0;
+    // true if the optimizer is plain gradient descent which allows a fused update kernel
+    private final boolean fused;
+    // number of weights and biases
+    private final long parameters;
+    // number of samples per weight update
+    private final int batchSize;
+    // pre-allocated gradient buffers, one per worker (mini-batch mode only)
+    private final Gradient[] gradients;
+    // row-major input values of the current mini-batch
+    private final double[] batchInputs;
+    // row-major expected values of the current mini-batch
+    private final double[] batchExpected;
+    // input buffer for elements which are not stored in an array of their own
+    private final double[] sample;
+    // dropout, weight decay and gradient clipping
+    private final Regularization regularization;
+    // random generator for dropout masks
+    private final SplittableRandom random;
+    // dropout masks per hidden layer (null without dropout)
+    private final double[][] masks;
+    // unmasked output values per hidden layer (null without dropout)
+    private final double[][] activated;
 
     /**
      * create a new Builder
@@ -32,14 +77,46 @@ public class Trainer extends FNN {
         return new Builder(inputs, outputs);
     }
 
-    private Trainer(Layer[] layers, double rate) {
+    private Trainer(Layer[] layers, double rate, Optimizer optimizer, int batchSize, int workers,
+                    TrainingListener listener, ExecutionPolicy policy, Regularization regularization,
+                    SplittableRandom random) {
         super(layers);
+        withExecutionPolicy(policy);
         this.layers = layers;
         this.rate = rate;
+        this.optimizer = optimizer;
+        this.fused = optimizer == Optimizers.SGD;
+        this.listener = listener;
+        this.instrumented = listener != TrainingListener.NONE;
+        this.batchSize = batchSize;
+        long parameters = 0;
+        for (Layer layer : layers) {
+            parameters += layer.bias.length + layer.weights.length;
+        }
+        this.parameters = parameters;
         this.delta = new double[layers.length][];
+        this.biasUpdaters = new Optimizer.Updater[layers.length];
+        this.weightUpdaters = new Optimizer.Updater[layers.length];
         for (int i = 0; i < layers.length; i++) {
             delta[i] = new double[layers[i].values.length];
+            biasUpdaters[i] = optimizer.create(layers[i].bias.length);
+            weightUpdaters[i] = optimizer.create(layers[i].weights.length);
+        }
+        this.regularization = regularization;
+        this.random = random;
+        this.masks = regularization.dropout > 0.0 ? new double[layers.length][] : null;
+        this.activated = masks != null ? new double[layers.length][] : null;
+        for (int i = 1; masks != null && i < layers.length - 1; i++) {
+            masks[i] = new double[layers[i].values.length];
+            activated[i] = new double[layers[i].values.length];
+        }
+        this.gradients = new Gradient[batchSize > 1 ? Math.min(workers, batchSize) : 0];
+        for (int i = 0; i < gradients.length; i++) {
+            gradients[i] = new Gradient(layers, regularization, random.split());
         }
+        this.sample = new double[layers[0].values.length];
+        this.batchInputs = new double[gradients.length > 0 ? batchSize * sample.length : 0];
+        this.batchExpected = new double[gradients.length > 0 ? batchSize * layers[layers.length - 1].values.length : 0];
     }
 
     /**
@@ -51,6 +128,32 @@ public class Trainer extends FNN {
         return iterations;
     }
 
+    /**
+     * the layers of the network, shared with training controllers
+     * @return the layers
+     */
+    Layer[] layers() {
+        return layers;
+    }
+
+    /**
+     * get the current learning rate
+     * @return learning rate
+     */
+    public double getLearningRate() {
+        return rate;
+    }
+
+    /**
+     * change the learning rate of subsequent updates
+     * @param rate learning rate
+     * @return itself for method chaining
+     */
+    public Trainer setLearningRate(double rate) {
+        this.rate = rate;
+        return this;
+    }
+
     /**
      * train the network with the given parameters
      * @param dataSet the dataSet
@@ -60,7 +163,7 @@ public class Trainer extends FNN {
      * @throws IllegalStateException if iteration limit exceeds
      */
     public Trainer train(DataSet dataSet, double converge, int maxIterations) {
-        return train(dataSet, converge, maxIterations, false);
+        return train(dataSet, converge, maxIterations, true);
     }
 
     /**
@@ -68,16 +171,13 @@ public class Trainer extends FNN {
      * @param dataSet the dataSet
      * @param converge error threshold for convergence
      * @param maxIterations maximum count of iterations before Exception is thrown
-     * @param parallel use {@link Arrays#parallelSetAll(double[], IntToDoubleFunction)} instead of
-     *                 {@link Arrays#setAll(double[], IntToDoubleFunction)} for updates
+     * @param parallel false to compute sequentially, true to split large layers according to the execution policy
      * @return itself for method chaining
      * @throws IllegalStateException if iteration limit exceeds
      */
     public Trainer train(DataSet dataSet, double converge, int maxIterations, boolean parallel) {
-        final double[][] inputs = dataSet.inputs();
-        final double[][] expected = dataSet.expected();
         for (iterations = 0; iterations < maxIterations; iterations++) {
-            if (train(inputs, expected, parallel) <= converge) {
+            if (train(dataSet, parallel) <= converge) {
                 return this;
             }
         }
@@ -85,114 +185,575 @@ public class Trainer extends FNN {
     }
 
     /**
-     * do a single training step with a batch of values
+     * train all elements of the data set once
+     * @param dataSet the dataSet
+     * @param parallel false to compute sequentially, true to split large layers or,
+     *                 in mini-batch mode, large mini-batches according to the execution policy
+     * @return mean error of all elements
+     */
+    public double train(DataSet dataSet, boolean parallel) {
+        epochs++;
+        if (!instrumented) {
+            return trainEpoch(dataSet, parallel);
+        }
+        final long allocated = allocatedBytes();
+        final long start = System.nanoTime();
+        final double error = trainEpoch(dataSet, parallel);
+        final long nanos = System.nanoTime() - start;
+        listener.onEpoch(epochs, error, dataSet.size(), nanos, allocated < 0 ? -1L : allocatedBytes() - allocated);
+        return error;
+    }
+
+    private double trainEpoch(DataSet dataSet, boolean parallel) {
+        if (dataSet instanceof FlatDataSet) {
+            return train((FlatDataSet) dataSet, parallel);
+        }
+        try (DataSet.Cursor cursor = dataSet.cursor()) {
+            return train(cursor, parallel);
+        }
+    }
+
+    /**
+     * bytes allocated by the current thread so far
+     * @return allocated bytes or -1 if unsupported
+     */
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1L;
+    }
+
+    /**
+     * evaluate all elements of the data set without training
+     * @param dataSet the dataSet
+     * @return mean error of all elements
+     */
+    public double error(DataSet dataSet) {
+        final double[] output = layers[layers.length - 1].values;
+        double error = 0;
+        int count = 0;
+        try (DataSet.Cursor cursor = dataSet.cursor()) {
+            while (cursor.next()) {
+                System.arraycopy(cursor.input(), cursor.inputOffset(), sample, 0, sample.length);
+                eval(sample);
+                error += error(output, cursor.expected(), cursor.expectedOffset());
+                count++;
+            }
+        }
+        return error / count;
+    }
+
+    /**
+     * do a single training step with a batch of values. if a batch size
+     * greater than 1 has been configured the values are split into mini-batches
+     * and the weights are updated once per mini-batch.
      * @param input array of input arrays
      * @param expected array of expected output arrays
-     * @param parallel use {@link Arrays#parallelSetAll(double[], IntToDoubleFunction)} instead of
-     *                 {@link Arrays#setAll(double[], IntToDoubleFunction)} for updates
+     * @param parallel false to compute sequentially, true to split large layers or,
+     *                 in mini-batch mode, large mini-batches according to the execution policy
      * @return mean error of all inputs
      */
     public double train(double[][] input, double[][] expected, boolean parallel) {
+        try (DataSet.Cursor cursor = DataSet.fromArray(input, expected).cursor()) {
+            return train(cursor, parallel);
+        }
+    }
+
+    /**
+     * train all elements of a flat data set once. mini-batches are
+     * read directly from its backing arrays.
+     * @param dataSet the data set
+     * @param parallel false to compute sequentially, true to split large layers or,
+     *                 in mini-batch mode, large mini-batches according to the execution policy
+     * @return mean error of all elements
+     */
+    private double train(FlatDataSet dataSet, boolean parallel) {
+        return train(dataSet.inputBuffer(), dataSet.expectedBuffer(), dataSet.size(), parallel);
+    }
+
+    /**
+     * train the given row-major elements once
+     * @param inputs input values of all rows
+     * @param expected expected values of all rows
+     * @param size number of rows
+     * @param parallel false to compute sequentially, true to split large layers or,
+     *                 in mini-batch mode, large mini-batches according to the execution policy
+     * @return mean error of all elements
+     */
+    double train(double[] inputs, double[] expected, int size, boolean parallel) {
+        final int inputSize = layers[0].values.length;
+        final int expectedSize = layers[layers.length - 1].values.length;
         double error = 0;
-        for (int i = 0; i < input.length; i++) {
-            error += train(input[i], expected[i], parallel);
+        if (batchSize > 1) {
+            for (int row = 0; row < size; row += batchSize) {
+                error += trainBatch(inputs, row * inputSize, expected, row * expectedSize,
+                        Math.min(batchSize, size - row), parallel);
+            }
+        } else {
+            for (int row = 0; row < size; row++) {
+                error += train(inputs, row * inputSize, expected, row * expectedSize, parallel);
+            }
+        }
+        return error / size;
+    }
+
+    /**
+     * train all remaining elements of the cursor once
+     * @param cursor the cursor
+     * @param parallel false to compute sequentially, true to split large layers or,
+     *                 in mini-batch mode, large mini-batches according to the execution policy
+     * @return mean error of all elements
+     */
+    private double train(DataSet.Cursor cursor, boolean parallel) {
+        double error = 0;
+        int count = 0;
+        if (batchSize > 1) {
+            for (int length = fill(cursor); length > 0; length = fill(cursor)) {
+                error += trainBatch(batchInputs, 0, batchExpected, 0, length, parallel);
+                count += length;
+            }
+        } else {
+            while (cursor.next()) {
+                error += train(cursor.input(), cursor.inputOffset(), cursor.expected(), cursor.expectedOffset(), parallel);
+                count++;
+            }
+        }
+        return error / count;
+    }
+
+    /**
+     * copy the next mini-batch from the cursor into the batch buffers
+     * @param cursor the cursor
+     * @return number of elements in the mini-batch
+     */
+    private int fill(DataSet.Cursor cursor) {
+        final int inputs = layers[0].values.length;
+        final int outputs = layers[layers.length - 1].values.length;
+        int length = 0;
+        while (length < batchSize && cursor.next()) {
+            System.arraycopy(cursor.input(), cursor.inputOffset(), batchInputs, length * inputs, inputs);
+            System.arraycopy(cursor.expected(), cursor.expectedOffset(), batchExpected, length * outputs, outputs);
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * accumulate the gradients of a row-major mini-batch and update the weights once
+     * @param inputs buffer holding the input values
+     * @param inputOffset offset of the first input row
+     * @param expected buffer holding the expected values
+     * @param expectedOffset offset of the first expected row
+     * @param length number of samples in the mini-batch
+     * @param parallel split large mini-batches across the workers according to the execution policy
+     * @return summed error of the mini-batch
+     */
+    private double trainBatch(double[] inputs, int inputOffset, double[] expected, int expectedOffset,
+                              int length, boolean parallel) {
+        final int workers = parallel ? policy.blocks(length * parameters, Math.min(gradients.length, length)) : 1;
+        policy.run(workers, w -> accumulate(gradients[w], inputs, inputOffset, expected, expectedOffset,
+                length * w / workers, length * (w + 1) / workers));
+        final long start = instrumented ? System.nanoTime() : 0L;
+        final Gradient sum = gradients[0];
+        for (int w = 1; w < workers; w++) {
+            sum.add(gradients[w]);
+        }
+        final double step = optimizer.rate(rate, ++steps);
+        final double decay = regularization.decay(step);
+        final double norm = instrumented || regularization.clipping() ? Math.sqrt(sum.squaredNorm()) / length : 0.0;
+        final double scale = regularization.clip(norm) / length;
+        for (int l = 1; l < layers.length; l++) {
+            final double[] weights = layers[l].weights;
+            biasUpdaters[l].update(layers[l].bias, 0, sum.bias[l], 0, scale, layers[l].bias.length, step);
+            if (fused) {
+                Kernels.axpby(-step * scale, sum.weights[l], 0, decay, weights, 0, weights.length);
+            } else {
+                decay(weights, 0, weights.length, decay);
+                weightUpdaters[l].update(weights, 0, sum.weights[l], 0, scale, weights.length, step);
+            }
+        }
+        if (instrumented) {
+            final long updateNanos = System.nanoTime() - start;
+            listener.onBatch(length, sum.forwardNanos, sum.backwardNanos, updateNanos, norm);
+        }
+        return sum.error;
+    }
+
+    /**
+     * accumulate the gradients of a range of samples of a row-major mini-batch in one worker
+     * @param gradient the gradient buffers of the worker
+     * @param inputs buffer holding the input values
+     * @param inputOffset offset of the first input row
+     * @param expected buffer holding the expected values
+     * @param expectedOffset offset of the first expected row
+     * @param from index of the first sample (inclusive)
+     * @param to index of the last sample (exclusive)
+     */
+    private void accumulate(Gradient gradient, double[] inputs, int inputOffset, double[] expected, int expectedOffset,
+                            int from, int to) {
+        final int inputSize = layers[0].values.length;
+        final int outputSize = layers[layers.length - 1].values.length;
+        gradient.clear();
+        if (instrumented) {
+            for (int i = from; i < to; i++) {
+                gradient.accumulateTimed(layers, inputs, inputOffset + i * inputSize, expected, expectedOffset + i * outputSize);
+            }
+        } else {
+            for (int i = from; i < to; i++) {
+                gradient.accumulate(layers, inputs, inputOffset + i * inputSize, expected, expectedOffset + i * outputSize);
+            }
         }
-        return error / input.length;
     }
 
     /**
      * do a single training step with the given values
      * @param input the input values
      * @param expected expected values
-     * @param parallel use {@link Arrays#parallelSetAll(double[], IntToDoubleFunction)} instead of
-     *                 {@link Arrays#setAll(double[], IntToDoubleFunction)} for updates
+     * @param parallel false to compute sequentially, true to split large layers according to the execution policy
      * @return error of last layer
      */
     public double train(double[] input, double[] expected, boolean parallel) {
-        eval(input);
-        backward(expected, parallel);
-        return error(layers[layers.length - 1].values, expected);
+        return train(input, 0, expected, 0, parallel);
+    }
+
+    /**
+     * do a single training step with values read from the given buffers
+     * @param input buffer holding the input values
+     * @param inputOffset offset of the first input value
+     * @param expected buffer holding the expected values
+     * @param expectedOffset offset of the first expected value
+     * @param parallel false to compute sequentially, true to split large layers according to the execution policy
+     * @return error of last layer
+     */
+    private double train(double[] input, int inputOffset, double[] expected, int expectedOffset, boolean parallel) {
+        if (instrumented) {
+            return trainTimed(input, inputOffset, null, expected, expectedOffset, parallel);
+        }
+        forward(input, inputOffset, null, parallel);
+        backward(expected, expectedOffset, null, parallel);
+        return error(layers[layers.length - 1].values, expected, expectedOffset);
+    }
+
+    /**
+     * do a single training step with sparse input values. only the weights of
+     * the non-zero inputs are read and updated in the first layer, so stateful
+     * optimizers update them lazily.
+     * @param input the sparse input values
+     * @param expected expected values
+     * @param parallel false to compute sequentially, true to split all but the first layer according to the execution policy
+     * @return error of last layer
+     */
+    public double train(SparseVector input, double[] expected, boolean parallel) {
+        if (instrumented) {
+            return trainTimed(null, 0, input, expected, 0, parallel);
+        }
+        forward(null, 0, input, parallel);
+        backward(expected, 0, input, parallel);
+        return error(layers[layers.length - 1].values, expected, 0);
+    }
+
+    /**
+     * like {@link #train(double[], int, double[], int, boolean)} but reports its metrics to the listener
+     */
+    private double trainTimed(double[] input, int inputOffset, SparseVector sparse,
+                              double[] expected, int expectedOffset, boolean parallel) {
+        final long start = System.nanoTime();
+        forward(input, inputOffset, sparse, parallel);
+        final long forwarded = System.nanoTime();
+        calcOutputDeltas(expected, expectedOffset);
+        final long backwarded = System.nanoTime();
+        update(sparse, parallel);
+        final long updated = System.nanoTime();
+        listener.onBatch(1, forwarded - start, backwarded - forwarded, updated - backwarded,
+                Math.sqrt(squaredGradientNorm(sparse)));
+        return error(layers[layers.length - 1].values, expected, expectedOffset);
+    }
+
+    /**
+     * evaluate the input values of a single sample and apply dropout to the hidden layers
+     * @param input buffer holding the input values
+     * @param inputOffset offset of the first input value
+     * @param sparse the sparse input values or null
+     * @param parallel false to compute sequentially, true to split large layers according to the execution policy
+     */
+    private void forward(double[] input, int inputOffset, SparseVector sparse, boolean parallel) {
+        if (sparse != null) {
+            forward(sparse);
+        } else {
+            if (inputOffset == 0 && input.length == sample.length) {
+                layers[0].values = input;
+            } else {
+                System.arraycopy(input, inputOffset, sample, 0, sample.length);
+                layers[0].values = sample;
+            }
+            forward(1, parallel);
+        }
+        for (int l = 2; l < layers.length; l++) {
+            if (masks != null) {
+                regularization.drop(layers[l - 1].values, activated[l - 1], masks[l - 1], random);
+            }
+            forward(l, parallel);
+        }
+    }
+
+    /**
+     * squared norm of the gradient of the current sample. the gradient of a
+     * row of weights is its delta times the precursor values, so it is
+     * derived from the norms of deltas and values without materializing it.
+     * @param sparse the sparse input values or null
+     * @return the squared norm
+     */
+    private double squaredGradientNorm(SparseVector sparse) {
+        double sum = 0.0;
+        for (int l = 1; l < layers.length; l++) {
+            sum += squaredGradientNorm(l, sparse);
+        }
+        return sum;
+    }
+
+    /**
+     * squared norm of the gradient of the biases and weights of a single layer
+     * @param l index of the layer
+     * @param sparse the sparse input values or null
+     * @return the squared norm
+     */
+    private double squaredGradientNorm(int l, SparseVector sparse) {
+        final double[] precursor = layers[l - 1].values;
+        final double values = l == 1 && sparse != null
+                ? sparse.squaredNorm()
+                : Kernels.dot(precursor, 0, precursor, 0, precursor.length);
+        return Kernels.dot(delta[l], 0, delta[l], 0, delta[l].length) * (1.0 + values);
     }
 
     /**
      * calculate error
      * @param values the output values of a layer
-     * @param expected expected values
+     * @param expected buffer holding the expected values
+     * @param offset offset of the first expected value
      * @return the error
      */
-    private double error(double[] values, double[] expected) {
+    private double error(double[] values, double[] expected, int offset) {
         double e = 0.0;
         for (int j = 0; j < values.length; j++) {
-            e += Math.pow(values[j] - expected[j], 2.0);
+            e += Math.pow(values[j] - expected[offset + j], 2.0);
         }
         return e / 2.0;
     }
 
     /**
      * backpropagation
-     * @param expected expected values
-     * @param parallel use {@link Arrays#parallelSetAll(double[], IntToDoubleFunction)} instead of
-     *                 {@link Arrays#setAll(double[], IntToDoubleFunction)} for updates
+     * @param expected buffer holding the expected values
+     * @param offset offset of the first expected value
+     * @param sparse the sparse input values or null
+     * @param parallel false to compute sequentially, true to split large layers according to the execution policy
      * @return deltas
      */
-    private double[][] backward(double[] expected, boolean parallel) {
-        calcOutputDeltas(expected);
-        calcHiddenDeltas();
-        update(parallel);
+    private double[][] backward(double[] expected, int offset, SparseVector sparse, boolean parallel) {
+        calcOutputDeltas(expected, offset);
+        update(sparse, parallel);
         return delta;
     }
 
     /**
      * calc deltas of the output layer
-     * @param expected expected values
+     * @param expected buffer holding the expected values
+     * @param offset offset of the first expected value
      */
-    private void calcOutputDeltas(double[] expected) {
-        final double[] outValues = layers[layers.length - 1].values;
-        Arrays.setAll(
-                delta[layers.length - 1],
-                i -> outValues[i] * (1.0 - outValues[i]) * (outValues[i] - expected[i]));
+    private void calcOutputDeltas(double[] expected, int offset) {
+        final Layer output = layers[layers.length - 1];
+        final double[] outDelta = delta[layers.length - 1];
+        for (int i = 0; i < outDelta.length; i++) {
+            outDelta[i] = output.values[i] - expected[offset + i];
+        }
+        output.activation.derivative(output.values, outDelta, outDelta.length);
     }
 
     /**
-     * calc deltas of hidden layers (if any)
+     * propagate the deltas back and update weights and biases. layers are
+     * processed from the output to the input layer. the deltas of the precursor
+     * are accumulated from the weights before they are updated in the same pass,
+     * so the weights of each layer are swept only once. with gradient clipping
+     * and plain gradient descent the update is applied unscaled while the norm
+     * is summed up, and corrected in a second sweep only if the norm exceeds
+     * the maximum.
+     * @param sparse the sparse input values or null
+     * @param parallel split the precursor units of large layers into blocks according to the execution policy
      */
-    private void calcHiddenDeltas() {
-        for (int l = layers.length - 2; l >= 1; l--) {
+    private void update(SparseVector sparse, boolean parallel) {
+        final double step = optimizer.rate(rate, ++steps);
+        final double decay = regularization.decay(step);
+        final boolean clipping = regularization.clipping();
+        if (clipping && !fused) {
+            updateClipped(sparse, parallel, step, decay);
+            return;
+        }
+        double norm = 0.0;
+        for (int l = layers.length - 1; l >= 1; l--) {
+            if (clipping) {
+                norm += squaredGradientNorm(l, sparse);
+            }
             final Layer layer = layers[l];
-            final Layer next = layers[l + 1];
-            final double[] nextDelta = delta[l + 1];
-            Arrays.setAll(delta[l], j -> {
-                double t = 0;
-                for (int i = 0; i < next.values.length; i++) {
-                    t += nextDelta[i] * next.weights[i * layer.values.length + j];
-                }
-                return layer.values[j] * (1.0 - layer.values[j]) * t;
-            });
+            final int inputs = layers[l - 1].values.length;
+            final double[] precursorDelta = l > 1 ? delta[l - 1] : null;
+            biasUpdaters[l].update(layer.bias, 0, delta[l], 0, 1.0, layer.bias.length, step);
+            if (precursorDelta != null) {
+                Arrays.fill(precursorDelta, 0.0);
+            }
+            if (l == 1 && sparse != null) {
+                updateSparse(sparse, step, 1.0, decay);
+            } else {
+                final int layerIndex = l;
+                final int blocks = parallel ? policy.blocks((long) inputs * layer.values.length, inputs / MIN_COLUMNS) : 1;
+                policy.run(blocks, b -> updateColumns(layerIndex, precursorDelta, inputs * b / blocks,
+                        inputs * (b + 1) / blocks, step, 1.0, decay));
+            }
+            if (precursorDelta != null) {
+                derivative(l - 1);
+            }
+        }
+        if (clipping) {
+            final double scale = regularization.clip(Math.sqrt(norm));
+            if (scale < 1.0) {
+                // w - step * d * a + step * (1 - scale) * d * a = w - step * scale * d * a
+                updateLayers(sparse, parallel, step, scale - 1.0, 1.0);
+            }
         }
     }
 
     /**
-     * update weights and biases
+     * like {@link #update(SparseVector, boolean)} but scales the gradient down to the
+     * maximum norm for stateful optimizers, whose update cannot be corrected afterwards.
+     * the norm depends on the deltas of all layers, so they are propagated back
+     * before the first weight is updated, which reads the weights of the hidden
+     * layers once more.
+     * @param sparse the sparse input values or null
+     * @param parallel split the precursor units of large layers into blocks according to the execution policy
+     * @param step learning rate of the update
+     * @param decay factor of the weights in the update
      */
-    private void update(boolean parallel) {
-        for (int l = 1; l < layers.length; l++) {
+    private void updateClipped(SparseVector sparse, boolean parallel, double step, double decay) {
+        for (int l = layers.length - 1; l > 1; l--) {
+            Kernels.backward(delta[l - 1], layers[l - 1].values.length, delta[l], layers[l].values.length, layers[l].weights);
+            derivative(l - 1);
+        }
+        updateLayers(sparse, parallel, step, regularization.clip(Math.sqrt(squaredGradientNorm(sparse))), decay);
+    }
+
+    /**
+     * update weights and biases of all layers with the current deltas
+     * @param sparse the sparse input values or null
+     * @param parallel split the precursor units of large layers into blocks according to the execution policy
+     * @param step learning rate of the update
+     * @param scale factor of the gradient
+     * @param decay factor of the weights in the update
+     */
+    private void updateLayers(SparseVector sparse, boolean parallel, double step, double scale, double decay) {
+        for (int l = layers.length - 1; l >= 1; l--) {
             final Layer layer = layers[l];
-            final Layer previous = layers[l - 1];
-            final double[] currentDelta = delta[l];
-            Arrays.setAll(layer.bias,
-                    index -> layer.bias[index] - rate * currentDelta[index % layer.values.length]);
-            if (parallel) {
-                Arrays.parallelSetAll(
-                        layer.weights,
-                        index -> layer.weights[index] - rate * currentDelta[index % layer.values.length] * previous.values[index / layer.values.length]);
+            final int inputs = layers[l - 1].values.length;
+            biasUpdaters[l].update(layer.bias, 0, delta[l], 0, scale, layer.bias.length, step);
+            if (l == 1 && sparse != null) {
+                updateSparse(sparse, step, scale, decay);
             } else {
-                Arrays.setAll(
-                        layer.weights,
-                        index -> layer.weights[index] - rate * currentDelta[index % layer.values.length] * previous.values[index / layer.values.length]);
+                final int layerIndex = l;
+                final int blocks = parallel ? policy.blocks((long) inputs * layer.values.length, inputs / MIN_COLUMNS) : 1;
+                policy.run(blocks, b -> updateColumns(layerIndex, null, inputs * b / blocks,
+                        inputs * (b + 1) / blocks, step, scale, decay));
             }
         }
     }
 
+    /**
+     * apply the derivatives of dropout and activation to the deltas of a hidden layer
+     * @param l index of the layer
+     */
+    private void derivative(int l) {
+        if (masks != null) {
+            Regularization.derivative(layers[l].activation, activated[l], masks[l], delta[l]);
+        } else {
+            layers[l].activation.derivative(layers[l].values, delta[l], delta[l].length);
+        }
+    }
+
+    /**
+     * update the weights of the first layer connected to non-zero inputs. weights
+     * of zero inputs are not decayed, like the state of stateful optimizers.
+     * @param input the sparse input values
+     * @param step learning rate of the update
+     * @param scale factor of the gradient
+     * @param decay factor of the weights
+     */
+    private void updateSparse(SparseVector input, double step, double scale, double decay) {
+        final double[] weights = layers[1].weights;
+        final double[] currentDelta = delta[1];
+        final Optimizer.Updater updater = weightUpdaters[1];
+        for (int j = 0; j < currentDelta.length; j++) {
+            final double d = scale * currentDelta[j];
+            final int offset = j * input.size;
+            if (decay != 1.0) {
+                for (int k = 0; k < input.indices.length; k++) {
+                    weights[offset + input.indices[k]] *= decay;
+                }
+            }
+            if (fused) {
+                Kernels.axpy(-step * d, input, weights, offset);
+            } else {
+                for (int k = 0; k < input.indices.length; k++) {
+                    updater.update(weights, offset + input.indices[k], input.values, k, d, 1, step);
+                }
+            }
+        }
+    }
+
+    /**
+     * update the weights connected to a range of precursor units and propagate
+     * the deltas of the layer onto them if precursor deltas are given
+     * @param l index of the layer
+     * @param precursorDelta deltas of the precursor or null if they are not needed
+     * @param from index of the first precursor unit (inclusive)
+     * @param to index of the last precursor unit (exclusive)
+     * @param step learning rate of the update
+     * @param scale factor of the gradient
+     * @param decay factor of the weights
+     */
+    private void updateColumns(int l, double[] precursorDelta, int from, int to, double step, double scale, double decay) {
+        final double[] weights = layers[l].weights;
+        final double[] precursor = layers[l - 1].values;
+        final double[] currentDelta = delta[l];
+        final Optimizer.Updater updater = weightUpdaters[l];
+        final int inputs = precursor.length;
+        final int length = to - from;
+        for (int j = 0; j < currentDelta.length; j++) {
+            final double d = currentDelta[j];
+            final int offset = j * inputs + from;
+            if (precursorDelta == null) {
+                if (fused) {
+                    Kernels.axpby(-step * scale * d, precursor, from, decay, weights, offset, length);
+                } else {
+                    decay(weights, offset, length, decay);
+                    updater.update(weights, offset, precursor, from, scale * d, length, step);
+                }
+            } else if (fused) {
+                Kernels.backwardUpdate(precursorDelta, precursor, from, weights, offset, d, -step * d, decay, length);
+            } else {
+                // the row is still cached when the updater reads it
+                Kernels.axpy(d, weights, offset, precursorDelta, from, length);
+                decay(weights, offset, length, decay);
+                updater.update(weights, offset, precursor, from, d, length, step);
+            }
+        }
+    }
+
+    /**
+     * multiply a region of the weights by the decay factor
+     */
+    private static void decay(double[] weights, int offset, int length, double decay) {
+        if (decay != 1.0) {
+            Kernels.scale(decay, weights, offset, length);
+        }
+    }
+
     /**
      * builder to ease setup and addition of hidden layers.
      */
@@ -208,6 +769,22 @@ public class Trainer extends FNN {
         private final int outputSize;
         // learning learningRate
         private double learningRate = 0.1;
+        // number of samples per weight update
+        private int batchSize = 1;
+        // number of workers in mini-batch mode, 0 for the number of available processors
+        private int workers = 0;
+        // activation of the output layer
+        private Activation outputActivation = Activation.SIGMOID;
+        // update rule
+        private Optimizer optimizer = Optimizer.sgd();
+        // receiver of training metrics
+        private TrainingListener listener = TrainingListener.NONE;
+        // strategy for initial weights
+        private Initializer initializer = Initializer.uniform();
+        // splits the work of large layers across threads, null for the common pool
+        private ExecutionPolicy policy = null;
+        // dropout, weight decay and gradient clipping
+        private Regularization regularization = Regularization.none();
 
         private Builder(int inputSize, int outputSize) {
             input = new double[inputSize];
@@ -217,17 +794,37 @@ public class Trainer extends FNN {
         }
 
         /**
-         * add a new hidden layer
+         * add a new hidden layer with sigmoid activation
          * @param size number of neurons / units in the layer
          * @return this builder
          */
         public Builder addHiddenLayer(int size) {
-            Layer temp = new Layer(layerSize, size);
+            return addHiddenLayer(size, Activation.SIGMOID);
+        }
+
+        /**
+         * add a new hidden layer
+         * @param size number of neurons / units in the layer
+         * @param activation activation of the layer
+         * @return this builder
+         */
+        public Builder addHiddenLayer(int size, Activation activation) {
+            Layer temp = new Layer(layerSize, size, activation);
             layerSize = size;
             layers.add(temp);
             return this;
         }
 
+        /**
+         * set the activation of the output layer (sigmoid by default)
+         * @param activation activation of the output layer
+         * @return this builder
+         */
+        public Builder withOutputActivation(Activation activation) {
+            this.outputActivation = activation;
+            return this;
+        }
+
         /**
          * set learning learningRate
          * @param rate learning learningRate
@@ -238,6 +835,85 @@ public class Trainer extends FNN {
             return this;
         }
 
+        /**
+         * set the update rule (plain gradient descent by default)
+         * @param optimizer the optimizer
+         * @return this builder
+         */
+        public Builder withOptimizer(Optimizer optimizer) {
+            this.optimizer = optimizer;
+            return this;
+        }
+
+        /**
+         * set the strategy for the initial weights (uniform in [-1, 1) by default)
+         * @param initializer the initializer
+         * @return this builder
+         */
+        public Builder withInitializer(Initializer initializer) {
+            this.initializer = initializer;
+            return this;
+        }
+
+        /**
+         * set the policy which splits the work of large layers across threads
+         * (common pool by default)
+         * @param policy the execution policy
+         * @return this builder
+         */
+        public Builder withExecutionPolicy(ExecutionPolicy policy) {
+            this.policy = policy;
+            return this;
+        }
+
+        /**
+         * set dropout, weight decay and gradient clipping (none by default)
+         * @param regularization the regularization
+         * @return this builder
+         */
+        public Builder withRegularization(Regularization regularization) {
+            this.regularization = regularization;
+            return this;
+        }
+
+        /**
+         * set the receiver of training metrics (none by default)
+         * @param listener the listener
+         * @return this builder
+         */
+        public Builder withListener(TrainingListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * set the number of samples whose gradients are accumulated before
+         * the weights are updated. 1 (default) updates after each sample.
+         * @param batchSize mini-batch size
+         * @return this builder
+         */
+        public Builder withBatchSize(int batchSize) {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("Invalid batch size " + batchSize);
+            }
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * set the number of workers a mini-batch is split across during
+         * parallel training. defaults to the number of available processors.
+         * @param workers number of workers
+         * @return this builder
+         */
+        public Builder withWorkers(int workers) {
+            if (workers < 1) {
+                throw new IllegalArgumentException("Invalid number of workers " + workers);
+            }
+            this.workers = workers;
+            return this;
+        }
+
         /**
          * build a trainable network
          * @return a trainable eval forward network
@@ -252,34 +928,92 @@ public class Trainer extends FNN {
          * @return a trainable eval forward network
          */
         public Trainer build(long randomSeed) {
-            addHiddenLayer(outputSize);
+            final SplittableRandom random = new SplittableRandom(randomSeed);
+            final Layer[] layers = buildLayers(randomSeed, random);
+            // split off after initialization so dropout masks do not repeat the initial weights
+            return new Trainer(layers, learningRate, optimizer, batchSize,
+                    workers == 0 ? Runtime.getRuntime().availableProcessors() : workers, listener,
+                    policy == null ? ExecutionPolicy.commonPool() : policy, regularization, random.split());
+        }
+
+        /**
+         * build a trainable single precision network which trains
+         * per sample with plain gradient descent
+         * @return a trainable single precision network
+         * @throws IllegalStateException if a setting not supported in single precision is present
+         */
+        public FloatTrainer buildFloat() {
+            return buildFloat(System.currentTimeMillis());
+        }
+
+        /**
+         * build a trainable single precision network which trains
+         * per sample with plain gradient descent
+         * @param randomSeed seed value for weight randomization or -1L to skip
+         * @return a trainable single precision network
+         * @throws IllegalStateException if a setting not supported in single precision is present
+         */
+        public FloatTrainer buildFloat(long randomSeed) {
+            final StringJoiner unsupported = new StringJoiner(", ");
+            if (batchSize != 1) {
+                unsupported.add("batch size");
+            }
+            if (workers != 0) {
+                unsupported.add("workers");
+            }
+            if (optimizer != Optimizer.sgd()) {
+                unsupported.add("optimizer");
+            }
+            if (regularization != Regularization.none()) {
+                unsupported.add("regularization");
+            }
+            if (listener != TrainingListener.NONE) {
+                unsupported.add("listener");
+            }
+            if (policy != null) {
+                unsupported.add("execution policy");
+            }
+            if (unsupported.length() > 0) {
+                throw new IllegalStateException("Not supported in single precision: " + unsupported);
+            }
+            return new FloatTrainer(buildLayers(randomSeed, new SplittableRandom(randomSeed)), learningRate);
+        }
+
+        /**
+         * add the output layer and initialize the weights
+         * @param randomSeed seed value for weight randomization or -1L to skip
+         * @param random generator seeded with the seed value
+         * @return the layers
+         */
+        private Layer[] buildLayers(long randomSeed, SplittableRandom random) {
+            addHiddenLayer(outputSize, outputActivation);
             if (randomSeed != -1L) {
-                initialize(randomSeed);
+                initialize(random);
             }
-            return new Trainer(this.layers.toArray(new Layer[0]), learningRate);
+            return this.layers.toArray(new Layer[0]);
         }
 
         /**
-         * initialize weights using the given seed
-         * @param seed seed value
+         * initialize weights using the given seed. the weights of each layer are
+         * split into chunks of rows, each with a random generator split off the
+         * seed in a fixed order, and the chunks are filled in parallel.
+         * @param random generator seeded with the seed value
          */
-        private void initialize(long seed) {
-            final SecureRandom random = new SecureRandom(
-                    new byte[]{
-                            (byte) ((seed >> 56) & 0xFF),
-                            (byte) ((seed >> 48) & 0xFF),
-                            (byte) ((seed >> 40) & 0xFF),
-                            (byte) ((seed >> 32) & 0xFF),
-                            (byte) ((seed >> 24) & 0xFF),
-                            (byte) ((seed >> 16) & 0xFF),
-                            (byte) ((seed >> 8) & 0xFF),
-                            (byte) (seed & 0xFF)
-                    }
-            );
-
-            for (int i = 1; i < layers.size(); i++) {
-                Arrays.setAll(layers.get(i).weights, k -> 1.0 - random.nextDouble() * 2.0);
+        private void initialize(SplittableRandom random) {
+            final List<Runnable> tasks = new ArrayList<>();
+            for (int l = 1; l < layers.size(); l++) {
+                final double[] weights = layers.get(l).weights;
+                final int units = layers.get(l).values.length;
+                final int inputs = weights.length / units;
+                final int rows = Math.max(1, INIT_CHUNK / Math.max(1, inputs));
+                for (int row = 0; row < units; row += rows) {
+                    final SplittableRandom split = random.split();
+                    final int offset = row * inputs;
+                    final int length = Math.min(rows, units - row) * inputs;
+                    tasks.add(() -> initializer.fill(weights, offset, length, inputs, units, split));
+                }
             }
+            tasks.parallelStream().forEach(Runnable::run);
         }
     }
 }
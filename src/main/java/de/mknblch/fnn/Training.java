@@ -0,0 +1,386 @@
+package de.mknblch.fnn;
+
+/**
+ * Training loop controller. Trains a {@link Trainer} epoch by epoch while
+ * scheduling the learning rate, and stops as soon as the error converges,
+ * stops improving for a number of epochs (patience) or diverges. The error is
+ * measured on a held-out validation set if one is given. The weights of the
+ * best epoch are kept and restored when training ends, or the initial weights
+ * if not a single epoch had a finite error. The state of the
+ * optimizer (momentum, moving averages) is not part of the checkpoint and
+ * stays at the last epoch.
+ *
+ * <pre>
+ *     Training.Result result = Training.of(trainer)
+ *         .withValidationSplit(0.2)
+ *         .withPatience(20)
+ *         .withSchedule(Schedule.cosine(500, 0.001))
+ *         .run(dataSet, 0.01, 500);
+ * </pre>
+ *
+ * @author mknblch
+ */
+public final class Training {
+
+    /**
+     * reason the training ended
+     */
+    public enum Outcome {
+        /** the error fell below the threshold */
+        CONVERGED,
+        /** the error did not improve for the configured patience */
+        STOPPED,
+        /** the error became NaN or infinite */
+        DIVERGED,
+        /** the maximum number of epochs has been reached */
+        EXHAUSTED
+    }
+
+    // the trained network
+    private final Trainer trainer;
+    // held-out data set, null if none
+    private DataSet validation = null;
+    // fraction of the training data held out if no validation set is given
+    private double validationSplit = 0.0;
+    // epochs without improvement before stopping
+    private int patience = Integer.MAX_VALUE;
+    // minimum decrease of the error which counts as improvement
+    private double minDelta = 0.0;
+    // learning rate schedule
+    private Schedule schedule = Schedule.constant();
+    // restore the weights of the best epoch at the end
+    private boolean restoreBest = true;
+    // split large layers according to the execution policy of the trainer
+    private boolean parallel = true;
+
+    private Training(Trainer trainer) {
+        this.trainer = trainer;
+    }
+
+    /**
+     * create a controller for the given trainer
+     * @param trainer the trainer
+     * @return a new controller
+     */
+    public static Training of(Trainer trainer) {
+        return new Training(trainer);
+    }
+
+    /**
+     * measure the error on the given data set instead of the training data
+     * @param validation held-out data set
+     * @return itself for method chaining
+     */
+    public Training withValidation(DataSet validation) {
+        this.validation = validation;
+        return this;
+    }
+
+    /**
+     * hold out the last rows of the training data for validation. the rows
+     * are not shuffled, ordered data sets must be shuffled beforehand.
+     * both parts are read through the cursor of the data set instead of being copied.
+     * @param fraction fraction of the rows between 0 and 1 (exclusive)
+     * @return itself for method chaining
+     */
+    public Training withValidationSplit(double fraction) {
+        if (fraction <= 0.0 || fraction >= 1.0) {
+            throw new IllegalArgumentException("Invalid validation split " + fraction);
+        }
+        this.validationSplit = fraction;
+        return this;
+    }
+
+    /**
+     * stop if the error did not improve by more than minDelta for a number of epochs
+     * @param patience number of epochs
+     * @param minDelta minimum decrease of the error
+     * @return itself for method chaining
+     */
+    public Training withPatience(int patience, double minDelta) {
+        if (patience < 1) {
+            throw new IllegalArgumentException("Invalid patience " + patience);
+        }
+        this.patience = patience;
+        this.minDelta = minDelta;
+        return this;
+    }
+
+    /**
+     * stop if the error did not improve for a number of epochs
+     * @param patience number of epochs
+     * @return itself for method chaining
+     */
+    public Training withPatience(int patience) {
+        return withPatience(patience, 0.0);
+    }
+
+    /**
+     * set the learning rate schedule (constant by default). the current
+     * learning rate of the trainer is the initial rate of the schedule.
+     * @param schedule the schedule
+     * @return itself for method chaining
+     */
+    public Training withSchedule(Schedule schedule) {
+        this.schedule = schedule;
+        return this;
+    }
+
+    /**
+     * keep the weights of the last epoch instead of the best one
+     * @return itself for method chaining
+     */
+    public Training keepLast() {
+        this.restoreBest = false;
+        return this;
+    }
+
+    /**
+     * split large layers or, in mini-batch mode, large mini-batches according
+     * to the execution policy of the trainer (default) or compute sequentially
+     * @param parallel false to compute sequentially
+     * @return itself for method chaining
+     */
+    public Training parallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    /**
+     * train until the error falls below the threshold, the training stops
+     * improving or diverges, or the maximum number of epochs is reached
+     * @param dataSet the training data
+     * @param converge error threshold for convergence
+     * @param maxEpochs maximum number of epochs
+     * @return the result
+     */
+    public Result run(DataSet dataSet, double converge, int maxEpochs) {
+        DataSet train = dataSet;
+        DataSet validation = this.validation;
+        if (validation == null && validationSplit > 0.0) {
+            final int split = dataSet.size() - Math.max(1, (int) (dataSet.size() * validationSplit));
+            if (split < 1) {
+                throw new IllegalArgumentException("Data set too small for validation split");
+            }
+            train = new Range(dataSet, 0, split);
+            validation = new Range(dataSet, split, dataSet.size());
+        }
+        final double rate = trainer.getLearningRate();
+        final FNN.Layer[] layers = trainer.layers();
+        final double[][] best = new double[layers.length * 2][];
+        for (int l = 1; l < layers.length; l++) {
+            best[2 * l] = layers[l].bias.clone();
+            best[2 * l + 1] = layers[l].weights.clone();
+        }
+        double bestError = Double.POSITIVE_INFINITY;
+        double trainError = Double.NaN;
+        double error = Double.NaN;
+        int bestEpoch = -1;
+        int epoch = 0;
+        Outcome outcome = Outcome.EXHAUSTED;
+        try {
+            while (epoch < maxEpochs) {
+                trainer.setLearningRate(schedule.rate(rate, epoch));
+                trainError = trainer.train(train, parallel);
+                error = validation == null ? trainError : trainer.error(validation);
+                epoch++;
+                if (Double.isNaN(error) || Double.isInfinite(error)) {
+                    outcome = Outcome.DIVERGED;
+                    break;
+                }
+                if (error < bestError - minDelta) {
+                    bestError = error;
+                    bestEpoch = epoch;
+                    for (int l = 1; l < layers.length; l++) {
+                        System.arraycopy(layers[l].bias, 0, best[2 * l], 0, best[2 * l].length);
+                        System.arraycopy(layers[l].weights, 0, best[2 * l + 1], 0, best[2 * l + 1].length);
+                    }
+                } else if (epoch - bestEpoch >= patience) {
+                    outcome = Outcome.STOPPED;
+                    break;
+                }
+                if (error <= converge) {
+                    outcome = Outcome.CONVERGED;
+                    break;
+                }
+            }
+        } finally {
+            trainer.setLearningRate(rate);
+        }
+        if (restoreBest && bestEpoch != epoch) {
+            for (int l = 1; l < layers.length; l++) {
+                System.arraycopy(best[2 * l], 0, layers[l].bias, 0, best[2 * l].length);
+                System.arraycopy(best[2 * l + 1], 0, layers[l].weights, 0, best[2 * l + 1].length);
+            }
+        }
+        return new Result(outcome, epoch, bestEpoch, bestError, trainError, error);
+    }
+
+    /**
+     * range of rows of a data set, read through its cursor without copying
+     */
+    private static final class Range implements DataSet {
+
+        // the underlying data set
+        private final DataSet dataSet;
+        // index of the first row (inclusive)
+        private final int from;
+        // index of the last row (exclusive)
+        private final int to;
+
+        private Range(DataSet dataSet, int from, int to) {
+            this.dataSet = dataSet;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public Cursor cursor() {
+            final Cursor cursor = dataSet.cursor();
+            for (int i = 0; i < from && cursor.next(); i++) {
+                // skip the rows before the range
+            }
+            return new Cursor() {
+
+                // index of the current row
+                private int row = from - 1;
+
+                @Override
+                public boolean next() {
+                    return ++row < to && cursor.next();
+                }
+
+                @Override
+                public int inputSize() {
+                    return cursor.inputSize();
+                }
+
+                @Override
+                public int expectedSize() {
+                    return cursor.expectedSize();
+                }
+
+                @Override
+                public double[] input() {
+                    return cursor.input();
+                }
+
+                @Override
+                public int inputOffset() {
+                    return cursor.inputOffset();
+                }
+
+                @Override
+                public double[] expected() {
+                    return cursor.expected();
+                }
+
+                @Override
+                public int expectedOffset() {
+                    return cursor.expectedOffset();
+                }
+
+                @Override
+                public void close() {
+                    cursor.close();
+                }
+            };
+        }
+    }
+
+    /**
+     * summary of a training run
+     */
+    public static final class Result {
+
+        // reason the training ended
+        private final Outcome outcome;
+        // number of epochs trained
+        private final int epochs;
+        // epoch with the lowest error (starting at 1)
+        private final int bestEpoch;
+        // lowest error
+        private final double bestError;
+        // training error of the last epoch
+        private final double trainingError;
+        // (validation) error of the last epoch
+        private final double lastError;
+
+        private Result(Outcome outcome, int epochs, int bestEpoch, double bestError,
+                       double trainingError, double lastError) {
+            this.outcome = outcome;
+            this.epochs = epochs;
+            this.bestEpoch = bestEpoch;
+            this.bestError = bestError;
+            this.trainingError = trainingError;
+            this.lastError = lastError;
+        }
+
+        /**
+         * reason the training ended
+         * @return the outcome
+         */
+        public Outcome outcome() {
+            return outcome;
+        }
+
+        /**
+         * true if the error fell below the threshold
+         * @return true if converged
+         */
+        public boolean converged() {
+            return outcome == Outcome.CONVERGED;
+        }
+
+        /**
+         * number of epochs trained
+         * @return number of epochs
+         */
+        public int epochs() {
+            return epochs;
+        }
+
+        /**
+         * epoch with the lowest error starting at 1, or -1 if none
+         * @return the best epoch
+         */
+        public int bestEpoch() {
+            return bestEpoch;
+        }
+
+        /**
+         * lowest (validation) error of all epochs
+         * @return the error
+         */
+        public double bestError() {
+            return bestError;
+        }
+
+        /**
+         * training error of the last epoch
+         * @return the error
+         */
+        public double trainingError() {
+            return trainingError;
+        }
+
+        /**
+         * (validation) error of the last epoch
+         * @return the error
+         */
+        public double lastError() {
+            return lastError;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{outcome=" + outcome + ", epochs=" + epochs + ", bestEpoch=" + bestEpoch
+                    + ", bestError=" + bestError + ", lastError=" + lastError + "}";
+        }
+    }
+}
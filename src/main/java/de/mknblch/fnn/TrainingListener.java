@@ -0,0 +1,46 @@
+package de.mknblch.fnn;
+
+/**
+ * receives metrics of a {@link Trainer}. all methods default to no-ops. the
+ * trainer only measures timings and gradient norms if a listener other than
+ * {@link #NONE} has been set, so training without a listener costs nothing.
+ * callbacks are invoked on the training thread.
+ *
+ * @author mknblch
+ */
+public interface TrainingListener {
+
+    /**
+     * listener which ignores all metrics (default)
+     */
+    TrainingListener NONE = new TrainingListener() {
+    };
+
+    /**
+     * called after each weight update
+     * @param samples number of samples of the update (1 in per-sample mode)
+     * @param forwardNanos time spent evaluating the samples. summed over all
+     *                     workers in parallel mini-batch mode
+     * @param backwardNanos time spent calculating deltas and gradients. summed
+     *                      over all workers in parallel mini-batch mode. only
+     *                      covers the output layer in per-sample mode
+     * @param updateNanos time spent reducing gradients and updating weights. includes
+     *                    the deltas of hidden layers in per-sample mode, which are
+     *                    calculated in the same pass as the update
+     * @param gradientNorm euclidean norm of the (mean) gradient of all biases and weights
+     */
+    default void onBatch(int samples, long forwardNanos, long backwardNanos, long updateNanos, double gradientNorm) {
+    }
+
+    /**
+     * called after each pass over a data set
+     * @param epoch number of the epoch starting at 1
+     * @param error mean error of all samples
+     * @param samples number of samples
+     * @param nanos duration of the epoch
+     * @param allocatedBytes bytes allocated by the training thread during the
+     *                       epoch or -1 if the JVM does not support measuring it
+     */
+    default void onEpoch(int epoch, double error, int samples, long nanos, long allocatedBytes) {
+    }
+}
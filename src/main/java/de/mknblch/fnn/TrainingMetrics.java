@@ -0,0 +1,127 @@
+package de.mknblch.fnn;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link TrainingListener} which aggregates metrics into a registry of named
+ * counters and gauges. values can be read from any thread, e.g. by a periodic
+ * exporter which forwards {@link #snapshot()} to a monitoring system.
+ *
+ * @author mknblch
+ */
+public final class TrainingMetrics implements TrainingListener {
+
+    // name prefix of all metrics
+    private final String prefix;
+    // number of epochs
+    private final AtomicLong epochs = new AtomicLong();
+    // number of weight updates
+    private final AtomicLong batches = new AtomicLong();
+    // number of trained samples
+    private final AtomicLong samples = new AtomicLong();
+    // total time spent in forward steps
+    private final AtomicLong forwardNanos = new AtomicLong();
+    // total time spent in backward steps
+    private final AtomicLong backwardNanos = new AtomicLong();
+    // total time spent in weight updates
+    private final AtomicLong updateNanos = new AtomicLong();
+    // total bytes allocated by the training thread
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    // mean error of the last epoch
+    private volatile double error = Double.NaN;
+    // throughput of the last epoch
+    private volatile double samplesPerSecond = 0.0;
+    // gradient norm of the last update
+    private volatile double gradientNorm = Double.NaN;
+    // largest gradient norm so far
+    private volatile double maxGradientNorm = 0.0;
+
+    /**
+     * create a registry whose metric names start with "fnn.train"
+     */
+    public TrainingMetrics() {
+        this("fnn.train");
+    }
+
+    /**
+     * create a registry
+     * @param prefix name prefix of all metrics
+     */
+    public TrainingMetrics(String prefix) {
+        this.prefix = prefix;
+    }
+
+    @Override
+    public void onBatch(int samples, long forwardNanos, long backwardNanos, long updateNanos, double gradientNorm) {
+        batches.incrementAndGet();
+        this.forwardNanos.addAndGet(forwardNanos);
+        this.backwardNanos.addAndGet(backwardNanos);
+        this.updateNanos.addAndGet(updateNanos);
+        this.gradientNorm = gradientNorm;
+        if (gradientNorm > maxGradientNorm || Double.isNaN(gradientNorm)) {
+            maxGradientNorm = gradientNorm;
+        }
+    }
+
+    @Override
+    public void onEpoch(int epoch, double error, int samples, long nanos, long allocatedBytes) {
+        epochs.incrementAndGet();
+        this.samples.addAndGet(samples);
+        if (allocatedBytes > 0) {
+            this.allocatedBytes.addAndGet(allocatedBytes);
+        }
+        this.error = error;
+        this.samplesPerSecond = nanos > 0 ? samples * 1e9 / nanos : 0.0;
+    }
+
+    /**
+     * mean error of the last epoch
+     * @return the error or NaN before the first epoch
+     */
+    public double error() {
+        return error;
+    }
+
+    /**
+     * throughput of the last epoch
+     * @return samples per second
+     */
+    public double samplesPerSecond() {
+        return samplesPerSecond;
+    }
+
+    /**
+     * gradient norm of the last update
+     * @return the norm or NaN before the first update
+     */
+    public double gradientNorm() {
+        return gradientNorm;
+    }
+
+    /**
+     * current values of all metrics by name
+     * @return a new map in stable order
+     */
+    public Map<String, Number> snapshot() {
+        final Map<String, Number> values = new LinkedHashMap<>();
+        values.put(prefix + ".epochs", epochs.get());
+        values.put(prefix + ".batches", batches.get());
+        values.put(prefix + ".samples", samples.get());
+        values.put(prefix + ".forward.nanos", forwardNanos.get());
+        values.put(prefix + ".backward.nanos", backwardNanos.get());
+        values.put(prefix + ".update.nanos", updateNanos.get());
+        values.put(prefix + ".allocated.bytes", allocatedBytes.get());
+        values.put(prefix + ".error", error);
+        values.put(prefix + ".samples.per.second", samplesPerSecond);
+        values.put(prefix + ".gradient.norm", gradientNorm);
+        values.put(prefix + ".gradient.norm.max", maxGradientNorm);
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+}
@@ -0,0 +1,76 @@
+package de.mknblch.fnn;
+
+import org.junit.Test;
+
+import static de.mknblch.fnn.TestData.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author mknblch
+ */
+public class ActivationTest {
+
+    public static final double H = 1e-6;
+
+    public static final double[] X = {-2.0, -0.7, -0.1, 0.3, 0.9, 1.7};
+    public static final double[] G = {0.5, -1.0, 0.25, 2.0, -0.3, 1.0};
+
+    /**
+     * analytic derivatives match the finite difference of each activation
+     */
+    @Test
+    public void testDerivatives() throws Exception {
+        for (Activation activation : Activation.values()) {
+            final double[] y = apply(activation, X);
+            final double[] delta = G.clone();
+            activation.derivative(y, delta, delta.length);
+            for (int i = 0; i < X.length; i++) {
+                final double[] xp = X.clone();
+                final double[] xm = X.clone();
+                xp[i] += H;
+                xm[i] -= H;
+                final double[] yp = apply(activation, xp);
+                final double[] ym = apply(activation, xm);
+                double numeric = 0.0;
+                for (int k = 0; k < X.length; k++) {
+                    numeric += G[k] * (yp[k] - ym[k]) / (2 * H);
+                }
+                assertEquals(activation.name(), numeric, delta[i], 1e-6);
+            }
+        }
+    }
+
+    /**
+     * softmax outputs sum up to 1
+     */
+    @Test
+    public void testSoftmax() throws Exception {
+        double sum = 0.0;
+        for (double v : apply(Activation.SOFTMAX, X)) {
+            assertTrue(v > 0.0);
+            sum += v;
+        }
+        assertEquals(1.0, sum, 1e-12);
+    }
+
+    /**
+     * training with other hidden activations converges
+     */
+    @Test
+    public void testTrainHidden() throws Exception {
+        for (Activation activation : new Activation[]{Activation.TANH, Activation.FAST_SIGMOID}) {
+            final Trainer trainer = Trainer.builder(2, 1)
+                    .withLearningRate(0.1)
+                    .addHiddenLayer(8, activation)
+                    .build(42L)
+                    .train(XOR, 0.01, 10_000);
+            FNNTest.assertClassify(trainer, XOR);
+        }
+    }
+
+    private static double[] apply(Activation activation, double[] x) {
+        final double[] y = x.clone();
+        activation.apply(y, 0, y.length);
+        return y;
+    }
+}
@@ -0,0 +1,64 @@
+package de.mknblch.fnn;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author mknblch
+ */
+public class CompiledModelTest {
+
+    /**
+     * a compiled XOR network evaluates like its model
+     */
+    @Test
+    public void testXOR() throws Exception {
+        final Model model = Trainer.builder(2, 1)
+                .withLearningRate(FNNTest.RATE)
+                .addHiddenLayer(3)
+                .build(FNNTest.RANDOM_SEED)
+                .train(TestData.XOR, 0.01, 10_000)
+                .toModel();
+        final CompiledModel compiled = CompiledModel.of(model);
+        assertEquals(2, compiled.inputSize());
+        assertEquals(1, compiled.outputSize());
+        for (double[] input : TestData.INPUTS) {
+            assertArrayEquals(model.eval(input), compiled.eval(input), 1e-12);
+        }
+    }
+
+    /**
+     * unrolled and generic stages of every width match the model
+     */
+    @Test
+    public void testWidths() throws Exception {
+        final Model model = Trainer.builder(3, 2)
+                .addHiddenLayer(1, Activation.TANH)
+                .addHiddenLayer(4, Activation.RELU)
+                .addHiddenLayer(2, Activation.LEAKY_RELU)
+                .addHiddenLayer(7, Activation.FAST_SIGMOID)
+                .withOutputActivation(Activation.SOFTMAX)
+                .build(42L)
+                .toModel();
+        final CompiledModel compiled = CompiledModel.of(model);
+        final Random random = new Random(42L);
+        final int rows = 50;
+        final double[] inputs = new double[rows * 3];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = random.nextDouble() * 2.0 - 1.0;
+        }
+        final double[] expected = model.eval(inputs, rows, new double[rows * 2]);
+        assertArrayEquals(expected, compiled.eval(inputs, rows, new double[rows * 2]), 1e-12);
+        final double[] output = new double[2];
+        for (int r = 0; r < rows; r++) {
+            final double[] input = Arrays.copyOfRange(inputs, r * 3, r * 3 + 3);
+            compiled.eval(input, output);
+            assertEquals(expected[r * 2], output[0], 1e-12);
+            assertEquals(expected[r * 2 + 1], output[1], 1e-12);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package de.mknblch.fnn;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author mknblch
+ */
+public class ExecutionPolicyTest {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    // splits even the small layers of the tests
+    private static final ExecutionPolicy POLICY = ExecutionPolicy.of(POOL).withThreshold(64);
+
+    @AfterClass
+    public static void shutdown() throws Exception {
+        POOL.shutdown();
+    }
+
+    /**
+     * small work is not split
+     */
+    @Test
+    public void testBlocks() throws Exception {
+        assertEquals(1, ExecutionPolicy.sequential().blocks(Long.MAX_VALUE, 100));
+        assertEquals(1, ExecutionPolicy.of(POOL).blocks(ExecutionPolicy.DEFAULT_THRESHOLD, 100));
+        assertEquals(4, ExecutionPolicy.of(POOL).blocks(ExecutionPolicy.DEFAULT_THRESHOLD * 4, 100));
+        assertEquals(10, ExecutionPolicy.of(POOL).blocks(ExecutionPolicy.DEFAULT_THRESHOLD * 100, 10));
+        final ForkJoinPool single = new ForkJoinPool(1);
+        try {
+            assertEquals(1, ExecutionPolicy.of(single).blocks(Long.MAX_VALUE, 100));
+        } finally {
+            single.shutdown();
+        }
+    }
+
+    /**
+     * every block runs exactly once
+     */
+    @Test
+    public void testRun() throws Exception {
+        final AtomicIntegerArray counts = new AtomicIntegerArray(37);
+        POLICY.run(counts.length(), counts::incrementAndGet);
+        for (int i = 0; i < counts.length(); i++) {
+            assertEquals(1, counts.get(i));
+        }
+    }
+
+    /**
+     * splitting layers yields the same values as sequential evaluation
+     */
+    @Test
+    public void testEval() throws Exception {
+        final FNN network = builder().build(TrainerTest.RANDOM_SEED);
+        final double[] input = input(new Random(42L));
+        final double[] expected = network.eval(input, false).clone();
+        network.withExecutionPolicy(POLICY);
+        assertArrayEquals(expected, network.eval(input), 0.0);
+    }
+
+    /**
+     * splitting layers yields the same weights as sequential training
+     */
+    @Test
+    public void testTrain() throws Exception {
+        final Trainer sequential = builder().build(TrainerTest.RANDOM_SEED);
+        final Trainer parallel = builder().withExecutionPolicy(POLICY).build(TrainerTest.RANDOM_SEED);
+        final Trainer batch = builder().withBatchSize(8).withExecutionPolicy(ExecutionPolicy.sequential())
+                .build(TrainerTest.RANDOM_SEED);
+        final Trainer parallelBatch = builder().withBatchSize(8).withWorkers(4).withExecutionPolicy(POLICY)
+                .build(TrainerTest.RANDOM_SEED);
+        final Random random = new Random(42L);
+        final double[][] inputs = new double[16][];
+        final double[][] expected = new double[16][];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = input(random);
+            expected[i] = new double[]{i % 2, 1 - i % 2};
+        }
+        for (int i = 0; i < 5; i++) {
+            sequential.train(inputs, expected, false);
+            parallel.train(inputs, expected, true);
+            batch.train(inputs, expected, true);
+            parallelBatch.train(inputs, expected, true);
+        }
+        TrainerTest.assertSameWeights(sequential, parallel);
+        TrainerTest.assertSameWeights(batch, parallelBatch);
+    }
+
+    /**
+     * sequential training does not touch the pool
+     */
+    @Test
+    public void testSequentialTrain() throws Exception {
+        final AtomicInteger invocations = new AtomicInteger();
+        final ForkJoinPool pool = new ForkJoinPool(4) {
+            @Override
+            public <T> T invoke(ForkJoinTask<T> task) {
+                invocations.incrementAndGet();
+                return super.invoke(task);
+            }
+        };
+        try {
+            final Trainer trainer = builder().withExecutionPolicy(ExecutionPolicy.of(pool).withThreshold(64))
+                    .build(TrainerTest.RANDOM_SEED);
+            final double[] input = input(new Random(42L));
+            trainer.train(input, new double[]{1, 0}, false);
+            assertEquals(0, invocations.get());
+            trainer.train(input, new double[]{1, 0}, true);
+            assertTrue(invocations.get() > 0);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static Trainer.Builder builder() {
+        return Trainer.builder(256, 2)
+                .withLearningRate(0.1)
+                .addHiddenLayer(40, Activation.TANH)
+                .addHiddenLayer(12);
+    }
+
+    private static double[] input(Random random) {
+        final double[] input = new double[256];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = random.nextDouble();
+        }
+        return input;
+    }
+}
@@ -0,0 +1,105 @@
+package de.mknblch.fnn;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static de.mknblch.fnn.TestData.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author mknblch
+ */
+public class FileDataSetTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * values survive a round trip through the file for any chunk size
+     */
+    @Test
+    public void testRoundTrip() throws Exception {
+        final Path path = folder.newFile().toPath();
+        FileDataSet.write(XOR, path);
+        for (int chunkRows : new int[]{1, 3, 4, 100}) {
+            final FileDataSet dataSet = FileDataSet.open(path, chunkRows);
+            assertEquals(4, dataSet.size());
+            assertEquals(2, dataSet.inputSize());
+            assertEquals(1, dataSet.expectedSize());
+            final double[][] inputs = dataSet.inputs();
+            final double[][] expected = dataSet.expected();
+            for (int i = 0; i < XOR.size(); i++) {
+                assertArrayEquals(XOR.inputs()[i], inputs[i], 0.0);
+                assertArrayEquals(XOR.expected()[i], expected[i], 0.0);
+            }
+        }
+    }
+
+    /**
+     * training from a file yields the same weights as training from arrays
+     */
+    @Test
+    public void testTrain() throws Exception {
+        final Path path = folder.newFile().toPath();
+        FileDataSet.write(XOR, path);
+        final FileDataSet dataSet = FileDataSet.open(path, 3);
+        for (int batchSize : new int[]{1, 3}) {
+            final Trainer expected = Trainer.builder(2, 1).addHiddenLayer(3).withBatchSize(batchSize).build(42L);
+            final Trainer actual = Trainer.builder(2, 1).addHiddenLayer(3).withBatchSize(batchSize).build(42L);
+            TrainerTest.copyWeights(expected, actual);
+            try {
+                expected.train(XOR, 0.0, 5);
+            } catch (IllegalStateException ignored) {
+            }
+            try {
+                actual.train(dataSet, 0.0, 5);
+            } catch (IllegalStateException ignored) {
+            }
+            TrainerTest.assertSameWeights(expected, actual);
+        }
+    }
+
+    /**
+     * invalid files are rejected
+     */
+    @Test(expected = IOException.class)
+    public void testInvalid() throws Exception {
+        final Path path = folder.newFile().toPath();
+        Files.write(path, new byte[100]);
+        FileDataSet.open(path);
+    }
+
+    /**
+     * rows too wide for a chunk buffer are rejected instead of overflowing
+     */
+    @Test
+    public void testWide() throws Exception {
+        assertEquals(4096, FileDataSet.chunkRows(4096, 3));
+        assertEquals(1, FileDataSet.chunkRows(4096, Integer.MAX_VALUE / 8));
+        assertEquals(0, FileDataSet.chunkRows(4096, Integer.MAX_VALUE));
+        final Path path = folder.newFile().toPath();
+        final ByteBuffer header = ByteBuffer.allocate(FileDataSet.HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(FileDataSet.MAGIC).putInt(FileDataSet.VERSION).putLong(1L)
+                .putInt(Integer.MAX_VALUE).putInt(Integer.MAX_VALUE);
+        Files.write(path, header.array());
+        try {
+            FileDataSet.open(path);
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+        try {
+            FileDataSet.writer(path, Integer.MAX_VALUE / 8, 1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
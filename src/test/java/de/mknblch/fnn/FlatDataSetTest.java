@@ -0,0 +1,68 @@
+package de.mknblch.fnn;
+
+import org.junit.Test;
+
+import static de.mknblch.fnn.TestData.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author mknblch
+ */
+public class FlatDataSetTest {
+
+    /**
+     * copied rows are laid out contiguously
+     */
+    @Test
+    public void testCopyOf() throws Exception {
+        final FlatDataSet dataSet = FlatDataSet.copyOf(IMP);
+        assertEquals(4, dataSet.size());
+        assertArrayEquals(new double[]{0, 0, 0, 1, 1, 0, 1, 1}, dataSet.inputBuffer(), 0.0);
+        assertArrayEquals(new double[]{1, 1, 0, 1}, dataSet.expectedBuffer(), 0.0);
+        final double[][] inputs = dataSet.inputs();
+        for (int i = 0; i < INPUTS.length; i++) {
+            assertArrayEquals(INPUTS[i], inputs[i], 0.0);
+        }
+    }
+
+    /**
+     * rows must match the arrays
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSize() throws Exception {
+        FlatDataSet.wrap(new double[6], new double[4], 2, 1);
+    }
+
+    /**
+     * training from contiguous arrays yields the same weights as training from jagged arrays
+     */
+    @Test
+    public void testTrain() throws Exception {
+        final FlatDataSet dataSet = FlatDataSet.copyOf(XOR);
+        for (int batchSize : new int[]{1, 3}) {
+            final Trainer expected = Trainer.builder(2, 1).addHiddenLayer(3).withBatchSize(batchSize).build(42L);
+            final Trainer actual = Trainer.builder(2, 1).addHiddenLayer(3).withBatchSize(batchSize).build(42L);
+            TrainerTest.copyWeights(expected, actual);
+            for (int i = 0; i < 5; i++) {
+                expected.train(XOR.inputs(), XOR.expected(), false);
+            }
+            try {
+                actual.train(dataSet, 0.0, 5, true);
+            } catch (IllegalStateException ignored) {
+            }
+            TrainerTest.assertSameWeights(expected, actual);
+        }
+    }
+
+    /**
+     * batched evaluation of all rows
+     */
+    @Test
+    public void testEval() throws Exception {
+        final Model model = Trainer.builder(2, 1).addHiddenLayer(3).build(42L).toModel();
+        final double[] outputs = model.eval(FlatDataSet.copyOf(XOR));
+        for (int i = 0; i < INPUTS.length; i++) {
+            assertEquals(model.eval(INPUTS[i])[0], outputs[i], 1e-12);
+        }
+    }
+}
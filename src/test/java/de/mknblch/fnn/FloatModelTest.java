@@ -0,0 +1,91 @@
+package de.mknblch.fnn;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static de.mknblch.fnn.TestData.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author mknblch
+ */
+public class FloatModelTest {
+
+    /**
+     * single precision evaluation stays close to double precision
+     */
+    @Test
+    public void testNarrow() throws Exception {
+        final Model model = Trainer.builder(20, 4)
+                .addHiddenLayer(30, Activation.TANH)
+                .build(42L)
+                .toModel();
+        final FloatModel floatModel = FloatModel.of(model);
+        final Model widened = floatModel.toModel();
+        final Random random = new Random(42L);
+        final double[] input = new double[20];
+        for (int k = 0; k < 10; k++) {
+            for (int i = 0; i < input.length; i++) {
+                input[i] = random.nextDouble();
+            }
+            final double[] expected = model.eval(input);
+            assertArrayEquals(expected, floatModel.eval(input), 1e-5);
+            assertArrayEquals(floatModel.eval(input), widened.eval(input), 1e-5);
+        }
+    }
+
+    /**
+     * single precision training follows double precision training
+     */
+    @Test
+    public void testTrain() throws Exception {
+        final Trainer trainer = Trainer.builder(2, 1).addHiddenLayer(3).withLearningRate(0.75).build(-1L);
+        final FloatTrainer floatTrainer = Trainer.builder(2, 1).addHiddenLayer(3).withLearningRate(0.75).buildFloat(-1L);
+        for (int i = 0; i < 50; i++) {
+            for (int k = 0; k < INPUTS.length; k++) {
+                trainer.train(INPUTS[k], XOR.expected()[k], false);
+                floatTrainer.train(FloatModel.toFloat(INPUTS[k]), FloatModel.toFloat(XOR.expected()[k]));
+            }
+        }
+        final Model model = floatTrainer.toModel();
+        for (double[] input : INPUTS) {
+            assertArrayEquals(trainer.eval(input).clone(), model.eval(input), 1e-4);
+        }
+    }
+
+    /**
+     * single precision training converges
+     */
+    @Test
+    public void testConverge() throws Exception {
+        final FloatTrainer trainer = Trainer.builder(2, 1)
+                .addHiddenLayer(8, Activation.TANH)
+                .withLearningRate(0.1)
+                .buildFloat(42L)
+                .train(XOR, 0.01, 10_000);
+        final FloatModel model = trainer.toFloatModel();
+        for (int i = 0; i < INPUTS.length; i++) {
+            assertEquals(XOR.expected()[i][0], model.eval(INPUTS[i])[0], 0.5);
+        }
+    }
+
+    /**
+     * settings a single precision trainer does not support are rejected
+     */
+    @Test
+    public void testUnsupported() throws Exception {
+        try {
+            Trainer.builder(2, 1).withOptimizer(Optimizer.adam()).buildFloat(42L);
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("optimizer"));
+        }
+        try {
+            Trainer.builder(2, 1).withBatchSize(4).withWorkers(2).buildFloat(42L);
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("batch size, workers"));
+        }
+    }
+}
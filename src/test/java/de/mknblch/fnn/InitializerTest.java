@@ -0,0 +1,62 @@
+package de.mknblch.fnn;
+
+import org.junit.Test;
+
+import java.util.function.ToDoubleFunction;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author mknblch
+ */
+public class InitializerTest {
+
+    /**
+     * the same seed yields the same weights
+     */
+    @Test
+    public void testReproducible() throws Exception {
+        final FNN a = builder().build(42L);
+        final FNN b = builder().build(42L);
+        final FNN c = builder().build(43L);
+        TrainerTest.assertSameWeights(a, b);
+        assertNotEquals(a.layers[1].weights[0], c.layers[1].weights[0], 0.0);
+    }
+
+    /**
+     * weights stay within the bounds of the initializer
+     */
+    @Test
+    public void testBounds() throws Exception {
+        assertBounds(builder().build(42L), l -> 1.0);
+        assertBounds(builder().withInitializer(Initializer.xavier()).build(42L),
+                l -> Math.sqrt(6.0 / (inputs(l) + l.values.length)));
+        assertBounds(builder().withInitializer(Initializer.he()).build(42L),
+                l -> Math.sqrt(6.0 / inputs(l)));
+    }
+
+    private static void assertBounds(FNN network, ToDoubleFunction<FNN.Layer> bound) {
+        for (int l = 1; l < network.layers.length; l++) {
+            final FNN.Layer layer = network.layers[l];
+            final double b = bound.applyAsDouble(layer);
+            double max = 0.0;
+            for (double w : layer.weights) {
+                assertTrue(w >= -b && w < b);
+                max = Math.max(max, Math.abs(w));
+            }
+            // the weights use most of the range
+            assertTrue(max > b * 0.9);
+        }
+    }
+
+    private static int inputs(FNN.Layer layer) {
+        return layer.weights.length / layer.values.length;
+    }
+
+    private static Trainer.Builder builder() {
+        // the first layer spans several initialization chunks
+        return Trainer.builder(300, 4)
+                .addHiddenLayer(400, Activation.RELU)
+                .addHiddenLayer(32);
+    }
+}
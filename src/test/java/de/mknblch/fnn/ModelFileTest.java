@@ -0,0 +1,115 @@
+package de.mknblch.fnn;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author mknblch
+ */
+public class ModelFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Model model = Trainer.builder(5, 3)
+            .addHiddenLayer(7, Activation.TANH)
+            .addHiddenLayer(4, Activation.RELU)
+            .withOutputActivation(Activation.SOFTMAX)
+            .build(42L)
+            .toModel();
+
+    /**
+     * mapped and heap models evaluate like the original
+     */
+    @Test
+    public void testWriteAndLoad() throws Exception {
+        final Path path = folder.newFile().toPath();
+        ModelFile.write(model, path);
+        final MappedModel mapped = ModelFile.map(path);
+        final Model read = ModelFile.read(path);
+        assertEquals(2, mapped.numLayer());
+        assertEquals(5, mapped.inputSize());
+        assertEquals(3, read.outputSize());
+        final Random random = new Random(42L);
+        for (int k = 0; k < 10; k++) {
+            final double[] input = new double[5];
+            for (int i = 0; i < input.length; i++) {
+                input[i] = random.nextDouble() * 2.0 - 1.0;
+            }
+            final double[] expected = model.eval(input);
+            assertArrayEquals(expected, mapped.eval(input), 0.0);
+            assertArrayEquals(expected, read.eval(input), 0.0);
+        }
+    }
+
+    /**
+     * rewriting a model file does not affect an existing mapping
+     */
+    @Test
+    public void testReplaceMapped() throws Exception {
+        final Path path = folder.newFile().toPath();
+        ModelFile.write(model, path);
+        final MappedModel mapped = ModelFile.map(path);
+        final Model other = Trainer.builder(5, 3)
+                .addHiddenLayer(2)
+                .build(7L)
+                .toModel();
+        ModelFile.write(other, path);
+        final double[] input = {0.1, -0.2, 0.3, -0.4, 0.5};
+        assertArrayEquals(model.eval(input), mapped.eval(input), 0.0);
+        assertArrayEquals(other.eval(input), ModelFile.map(path).eval(input), 0.0);
+        try (Stream<Path> files = Files.list(path.getParent())) {
+            assertEquals(1L, files.count());
+        }
+    }
+
+    /**
+     * invalid files are rejected
+     */
+    @Test(expected = IOException.class)
+    public void testInvalidMagic() throws Exception {
+        final Path path = folder.newFile().toPath();
+        Files.write(path, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+        ModelFile.map(path);
+    }
+
+    /**
+     * truncated files are rejected
+     */
+    @Test(expected = IOException.class)
+    public void testTruncated() throws Exception {
+        final Path path = folder.newFile().toPath();
+        ModelFile.write(model, path);
+        final byte[] bytes = Files.readAllBytes(path);
+        final byte[] truncated = new byte[bytes.length - 8];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        Files.write(path, truncated);
+        ModelFile.map(path);
+    }
+
+    /**
+     * layers without units are rejected
+     */
+    @Test(expected = IOException.class)
+    public void testInvalidSize() throws Exception {
+        final Path path = folder.newFile().toPath();
+        ModelFile.write(model, path);
+        final byte[] bytes = Files.readAllBytes(path);
+        // set the size of the first hidden layer to -1
+        bytes[16] = (byte) 0xFF;
+        bytes[17] = (byte) 0xFF;
+        bytes[18] = (byte) 0xFF;
+        bytes[19] = (byte) 0xFF;
+        Files.write(path, bytes);
+        ModelFile.map(path);
+    }
+}
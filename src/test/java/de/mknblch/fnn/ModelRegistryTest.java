@@ -0,0 +1,178 @@
+package de.mknblch.fnn;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author mknblch
+ */
+public class ModelRegistryTest {
+
+    private static Model model(long seed) {
+        return Trainer.builder(4, 3)
+                .addHiddenLayer(5)
+                .withOutputActivation(Activation.SOFTMAX)
+                .build(seed)
+                .toModel();
+    }
+
+    /**
+     * handles follow replacements while readers keep evaluating
+     */
+    @Test
+    public void testHotSwap() throws Exception {
+        final Model first = model(1L);
+        final Model second = model(2L);
+        final double[] input = {0.1, 0.2, 0.3, 0.4};
+        final double[] a = first.eval(input);
+        final double[] b = second.eval(input);
+        final ModelRegistry registry = ModelRegistry.unbounded();
+        assertNull(registry.put("m", first));
+        final Predictor handle = registry.get("m");
+        assertArrayEquals(a, handle.eval(input), 0.0);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final ExecutorService readers = Executors.newFixedThreadPool(2);
+        try {
+            final List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < 2; t++) {
+                done.add(readers.submit(() -> {
+                    final double[] output = new double[3];
+                    while (running.get()) {
+                        handle.eval(input, output);
+                        assertTrue(Arrays.equals(a, output) || Arrays.equals(b, output));
+                    }
+                    return null;
+                }));
+            }
+            for (int i = 0; i < 1000; i++) {
+                registry.put("m", i % 2 == 0 ? second : first);
+            }
+            running.set(false);
+            for (Future<?> future : done) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            readers.shutdown();
+        }
+        assertSame(first, registry.put("m", second));
+        assertArrayEquals(b, handle.eval(input), 0.0);
+    }
+
+    /**
+     * replacements must keep the sizes
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testSizeMismatch() throws Exception {
+        final ModelRegistry registry = ModelRegistry.unbounded();
+        registry.put("m", model(1L));
+        registry.put("m", Trainer.builder(4, 2).build(1L).toModel());
+    }
+
+    /**
+     * ensembles average or vote over their members
+     */
+    @Test
+    public void testEnsemble() throws Exception {
+        final Model[] models = {model(1L), model(2L), model(3L)};
+        final ModelRegistry registry = ModelRegistry.unbounded();
+        for (int m = 0; m < models.length; m++) {
+            registry.put("m" + m, models[m]);
+        }
+        final Predictor average = registry.ensemble(ModelRegistry.Combiner.AVERAGE, "m0", "m1", "m2");
+        final Predictor vote = registry.ensemble(ModelRegistry.Combiner.VOTE, "m0", "m1", "m2");
+        final double[][] inputs = {{0, 0, 0, 0}, {1, 0, 1, 0}, {0.5, -1, 2, 0.3}};
+        final double[][] averaged = average.eval(inputs);
+        final double[][] voted = vote.eval(inputs);
+        for (int r = 0; r < inputs.length; r++) {
+            final double[] expected = new double[3];
+            final double[] votes = new double[3];
+            for (Model model : models) {
+                final double[] output = model.eval(inputs[r]);
+                int best = 0;
+                for (int j = 0; j < 3; j++) {
+                    expected[j] += output[j] / models.length;
+                    best = output[j] > output[best] ? j : best;
+                }
+                votes[best] += 1.0 / models.length;
+            }
+            assertArrayEquals(expected, averaged[r], 1e-12);
+            assertArrayEquals(votes, voted[r], 1e-12);
+            assertArrayEquals(averaged[r], average.eval(inputs[r]), 1e-12);
+        }
+    }
+
+    /**
+     * the footprint of all predictors is limited by the capacity
+     */
+    @Test
+    public void testCapacity() throws Exception {
+        final Model first = model(1L);
+        final Model second = model(2L);
+        final long bytes = 8L * (5 * (4 + 1) + 3 * (5 + 1));
+        final ModelRegistry registry = ModelRegistry.withCapacity(2 * bytes);
+        registry.put("a", first);
+        registry.put("b", second);
+        assertEquals(2 * bytes, registry.footprint());
+        try {
+            registry.put("c", model(3L));
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        registry.put("b", FloatModel.of(second));
+        assertEquals(bytes + bytes / 2, registry.footprint());
+        assertSame(first, registry.remove("a"));
+        assertEquals(bytes / 2, registry.footprint());
+        registry.put("c", first);
+        assertEquals(2, registry.names().size());
+    }
+
+    /**
+     * an instance registered under several names is counted once
+     */
+    @Test
+    public void testShared() throws Exception {
+        final Model model = model(1L);
+        final long bytes = 8L * (5 * (4 + 1) + 3 * (5 + 1));
+        final ModelRegistry registry = ModelRegistry.withCapacity(bytes);
+        registry.put("a", model);
+        registry.put("b", model);
+        assertEquals(bytes, registry.footprint());
+        registry.remove("a");
+        assertEquals(bytes, registry.footprint());
+        registry.remove("b");
+        assertEquals(0L, registry.footprint());
+    }
+
+    /**
+     * handles of a removed predictor fail until the name is registered again
+     */
+    @Test
+    public void testRevive() throws Exception {
+        final Model first = model(1L);
+        final Model second = model(2L);
+        final ModelRegistry registry = ModelRegistry.unbounded();
+        registry.put("a", first);
+        final Predictor handle = registry.get("a");
+        registry.remove("a");
+        assertTrue(registry.names().isEmpty());
+        try {
+            handle.eval(new double[4]);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        registry.put("a", second);
+        assertArrayEquals(second.eval(new double[4]), handle.eval(new double[4]), 0.0);
+    }
+}
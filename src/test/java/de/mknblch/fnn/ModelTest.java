@@ -0,0 +1,117 @@
+package de.mknblch.fnn;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static de.mknblch.fnn.TestData.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author mknblch
+ */
+public class ModelTest {
+
+    public static final double RATE = 0.75;
+    public static final long RANDOM_SEED = 42L;
+
+    private static Trainer trainXOR() {
+        final Trainer trainer = Trainer.builder(2, 1)
+                .withLearningRate(RATE)
+                .addHiddenLayer(3)
+                .build(RANDOM_SEED);
+        for (int i = 0; i < 100; i++) {
+            trainer.train(XOR.inputs(), XOR.expected(), false);
+        }
+        return trainer;
+    }
+
+    /**
+     * model output equals network output
+     */
+    @Test
+    public void testSameOutput() throws Exception {
+        final Trainer trainer = trainXOR();
+        final Model model = trainer.toModel();
+        final double[] out = new double[1];
+        for (double[] input : INPUTS) {
+            assertArrayEquals(trainer.eval(input).clone(), model.eval(input, out), 1e-12);
+        }
+    }
+
+    /**
+     * further training does not affect a snapshot
+     */
+    @Test
+    public void testSnapshot() throws Exception {
+        final Trainer trainer = trainXOR();
+        final Model model = trainer.toModel();
+        final double[] before = model.eval(INPUTS[1]);
+        trainer.train(AND.inputs(), AND.expected(), false);
+        assertArrayEquals(before, model.eval(INPUTS[1]), 0.0);
+    }
+
+    /**
+     * batched evaluation equals single evaluation across tile and block boundaries
+     */
+    @Test
+    public void testBatchEval() throws Exception {
+        final Model model = Trainer.builder(300, 7)
+                .addHiddenLayer(270)
+                .addHiddenLayer(33)
+                .build(RANDOM_SEED)
+                .toModel();
+        final Random random = new Random(RANDOM_SEED);
+        final double[][] inputs = new double[150][300];
+        for (double[] input : inputs) {
+            Arrays.setAll(input, i -> random.nextDouble());
+        }
+        final double[][] outputs = model.eval(inputs);
+        for (int r = 0; r < inputs.length; r++) {
+            assertArrayEquals(model.eval(inputs[r]), outputs[r], 1e-9);
+        }
+    }
+
+    /**
+     * concurrent evaluation of a shared model
+     */
+    @Test
+    public void testConcurrentEval() throws Exception {
+        final Model model = trainXOR().toModel();
+        final double[][] expected = new double[INPUTS.length][];
+        for (int i = 0; i < INPUTS.length; i++) {
+            expected[i] = model.eval(INPUTS[i]);
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<Boolean>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    final double[] out = new double[1];
+                    final Model.Scratch scratch = model.newScratch();
+                    for (int k = 0; k < 10_000; k++) {
+                        final int i = k % INPUTS.length;
+                        if (model.eval(INPUTS[i], out, scratch)[0] != expected[i][0]) {
+                            return false;
+                        }
+                        if (model.eval(INPUTS[i], out)[0] != expected[i][0]) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package de.mknblch.fnn;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static de.mknblch.fnn.TestData.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author mknblch
+ */
+public class OnlineTrainerTest {
+
+    private static Trainer xor() {
+        return Trainer.builder(2, 1)
+                .withLearningRate(FNNTest.RATE)
+                .addHiddenLayer(3)
+                .build(FNNTest.RANDOM_SEED);
+    }
+
+    private static Stream<OnlineTrainer.Sample> stream(DataSet dataSet, int epochs) {
+        final double[][] inputs = dataSet.inputs();
+        final double[][] expected = dataSet.expected();
+        return IntStream.range(0, epochs * inputs.length)
+                .mapToObj(i -> OnlineTrainer.Sample.of(inputs[i % inputs.length], expected[i % inputs.length]));
+    }
+
+    /**
+     * online training of a stream publishes a model classifying XOR
+     */
+    @Test
+    public void testStream() throws Exception {
+        final List<Model> published = new CopyOnWriteArrayList<>();
+        final OnlineTrainer online = OnlineTrainer.of(xor())
+                .withMicroBatchSize(1)
+                .withPublishInterval(0, TimeUnit.MILLISECONDS)
+                .withPublisher(published::add);
+        final Model initial = online.model();
+        online.start(stream(XOR, 10_000)).await();
+        assertEquals(40_000, online.samples());
+        assertTrue(published.size() > 1);
+        assertSame(online.model(), published.get(published.size() - 1));
+        assertNotSame(initial, online.model());
+        assertClassify(online.model(), XOR);
+    }
+
+    /**
+     * samples added to the queue are trained in micro-batches and drained on close
+     */
+    @Test
+    public void testQueue() throws Exception {
+        final List<Model> published = new ArrayList<>();
+        final Trainer trainer = xor();
+        final OnlineTrainer online = OnlineTrainer.of(trainer)
+                .withMicroBatchSize(4)
+                .withQueueCapacity(16)
+                .withPublisher(published::add)
+                .start();
+        final double[][] inputs = XOR.inputs();
+        final double[][] expected = XOR.expected();
+        for (int i = 0; i < 40_000; i++) {
+            online.put(inputs[i % 4], expected[i % 4]);
+        }
+        online.close();
+        assertEquals(40_000, online.samples());
+        assertEquals(1, published.size());
+        assertFalse(online.offer(inputs[0], expected[0]));
+        assertClassify(online.model(), XOR);
+        assertArrayEquals(trainer.eval(inputs[1]), online.model().eval(inputs[1]), 0.0);
+    }
+
+    /**
+     * samples put after close are rejected instead of being lost
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testPutAfterClose() throws Exception {
+        final OnlineTrainer online = OnlineTrainer.of(xor()).start();
+        online.close();
+        online.put(INPUTS[0], new double[1]);
+    }
+
+    /**
+     * invalid samples fail the training
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testInvalidSample() throws Exception {
+        try (OnlineTrainer online = OnlineTrainer.of(xor())) {
+            online.start(Stream.of(OnlineTrainer.Sample.of(new double[3], new double[1]))).await();
+        }
+    }
+
+    private static void assertClassify(Predictor model, DataSet dataSet) {
+        final double[][] inputs = dataSet.inputs();
+        final double[][] expected = dataSet.expected();
+        for (int i = 0; i < inputs.length; i++) {
+            assertEquals(expected[i][0], model.eval(inputs[i])[0], 0.5);
+        }
+    }
+}
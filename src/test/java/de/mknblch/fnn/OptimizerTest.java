@@ -0,0 +1,106 @@
+package de.mknblch.fnn;
+
+import org.junit.Test;
+
+import static de.mknblch.fnn.TestData.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author mknblch
+ */
+public class OptimizerTest {
+
+    /**
+     * sgd subtracts the scaled gradient
+     */
+    @Test
+    public void testSgd() throws Exception {
+        final double[] params = {1.0, 2.0};
+        Optimizer.sgd().create(2).update(params, 0, new double[]{1.0, -1.0}, 0, 0.5, 2, 0.1);
+        assertArrayEquals(new double[]{0.95, 2.05}, params, 1e-12);
+    }
+
+    /**
+     * momentum accumulates the velocity over steps
+     */
+    @Test
+    public void testMomentum() throws Exception {
+        final double[] params = {0.0};
+        final Optimizer.Updater updater = Optimizer.momentum(0.5).create(1);
+        updater.update(params, 0, new double[]{1.0}, 0, 1.0, 1, 0.1);
+        assertEquals(-0.1, params[0], 1e-12);
+        updater.update(params, 0, new double[]{1.0}, 0, 1.0, 1, 0.1);
+        assertEquals(-0.25, params[0], 1e-12);
+    }
+
+    /**
+     * nesterov looks ahead along the velocity
+     */
+    @Test
+    public void testNesterov() throws Exception {
+        final double[] params = {0.0};
+        final Optimizer.Updater updater = Optimizer.nesterov(0.5).create(1);
+        updater.update(params, 0, new double[]{1.0}, 0, 1.0, 1, 0.1);
+        assertEquals(-0.15, params[0], 1e-12);
+    }
+
+    /**
+     * the first bias corrected adam step has the size of the learning rate
+     */
+    @Test
+    public void testAdam() throws Exception {
+        final Optimizer adam = Optimizer.adam();
+        final double[] params = {0.0, 0.0};
+        adam.create(2).update(params, 0, new double[]{4.0, -0.01}, 0, 1.0, 2, adam.rate(0.1, 1));
+        assertArrayEquals(new double[]{-0.1, 0.1}, params, 1e-5);
+    }
+
+    /**
+     * the first rmsprop step is normalized by the gradient magnitude
+     */
+    @Test
+    public void testRmsProp() throws Exception {
+        final double[] params = {0.0};
+        Optimizer.rmsProp(0.75).create(1).update(params, 0, new double[]{3.0}, 0, 1.0, 1, 0.1);
+        assertEquals(-0.2, params[0], 1e-6);
+    }
+
+    /**
+     * updaters only touch the given region of their parameters
+     */
+    @Test
+    public void testRegion() throws Exception {
+        final double[] params = {0.0, 0.0, 0.0};
+        final Optimizer adam = Optimizer.adam();
+        adam.create(3).update(params, 1, new double[]{1.0}, 0, 1.0, 1, adam.rate(0.1, 1));
+        assertEquals(0.0, params[0], 0.0);
+        assertEquals(0.0, params[2], 0.0);
+        assertEquals(-0.1, params[1], 1e-6);
+    }
+
+    /**
+     * training with each optimizer reduces the error
+     */
+    @Test
+    public void testTraining() throws Exception {
+        final Optimizer[] optimizers = {
+                Optimizer.momentum(0.9), Optimizer.nesterov(0.9), Optimizer.rmsProp(0.9), Optimizer.adam()
+        };
+        for (Optimizer optimizer : optimizers) {
+            for (int batchSize : new int[]{1, 4}) {
+                final Trainer trainer = Trainer.builder(2, 1)
+                        .addHiddenLayer(8, Activation.TANH)
+                        .withLearningRate(0.01)
+                        .withBatchSize(batchSize)
+                        .withOptimizer(optimizer)
+                        .build(TrainerTest.RANDOM_SEED);
+                final double initial = trainer.train(XOR.inputs(), XOR.expected(), false);
+                double error = initial;
+                for (int i = 0; i < 500; i++) {
+                    error = trainer.train(XOR.inputs(), XOR.expected(), false);
+                }
+                assertTrue(optimizer + " " + batchSize + ": " + error, error < initial);
+            }
+        }
+    }
+}
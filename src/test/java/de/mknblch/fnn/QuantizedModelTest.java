@@ -0,0 +1,67 @@
+package de.mknblch.fnn;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author mknblch
+ */
+public class QuantizedModelTest {
+
+    /**
+     * quantized evaluation stays close to the double model
+     */
+    @Test
+    public void testQuantize() throws Exception {
+        final Model model = Trainer.builder(32, 4)
+                .addHiddenLayer(64, Activation.TANH)
+                .withOutputActivation(Activation.SOFTMAX)
+                .build(42L)
+                .toModel();
+        final QuantizedModel quantized = QuantizedModel.quantize(model);
+        assertEquals(32, quantized.inputSize());
+        assertEquals(4, quantized.outputSize());
+        final Random random = new Random(42L);
+        final double[][] inputs = new double[200][32];
+        final double[][] expected = new double[200][4];
+        for (double[] input : inputs) {
+            for (int i = 0; i < input.length; i++) {
+                input[i] = random.nextDouble() * 2.0 - 1.0;
+            }
+        }
+        final Deviation deviation = Deviation.compare(model, quantized, DataSet.fromArray(inputs, expected));
+        assertTrue(deviation.toString(), deviation.maxError() < 0.05);
+        assertTrue(deviation.toString(), deviation.meanError() < 0.01);
+        assertTrue(deviation.toString(), deviation.agreement() > 0.9);
+    }
+
+    /**
+     * zero weights and inputs do not break the scale factors
+     */
+    @Test
+    public void testZero() throws Exception {
+        final Model model = Trainer.builder(2, 1).addHiddenLayer(3).build(-1L).toModel();
+        assertArrayEquals(model.eval(new double[2]), QuantizedModel.quantize(model).eval(new double[2]), 1e-12);
+    }
+
+    /**
+     * wide layers do not overflow the accumulator
+     */
+    @Test
+    public void testWide() throws Exception {
+        final int inputs = 200_000;
+        final double[] weights = new double[inputs];
+        final double[] input = new double[inputs];
+        Arrays.fill(weights, 1.0);
+        Arrays.fill(input, 1.0);
+        final Model model = new Model(new int[]{inputs, 1},
+                new Activation[]{Activation.IDENTITY, Activation.IDENTITY},
+                new double[][]{new double[0], new double[1]},
+                new double[][]{new double[0], weights});
+        assertEquals(inputs, QuantizedModel.quantize(model).eval(input)[0], 1e-6);
+    }
+}
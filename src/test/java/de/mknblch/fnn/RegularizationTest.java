@@ -0,0 +1,195 @@
+package de.mknblch.fnn;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author mknblch
+ */
+public class RegularizationTest {
+
+    // learning rate of all tests
+    private static final double RATE = 0.5;
+
+    private static Trainer.Builder builder(Regularization regularization) {
+        return Trainer.builder(3, 2)
+                .addHiddenLayer(4, Activation.TANH)
+                .addHiddenLayer(5)
+                .withOutputActivation(Activation.IDENTITY)
+                .withLearningRate(RATE)
+                .withRegularization(regularization);
+    }
+
+    /**
+     * weight decay shrinks the weights but not the biases in the update
+     */
+    @Test
+    public void testWeightDecay() throws Exception {
+        final Trainer trainer = Trainer.builder(2, 1)
+                .withOutputActivation(Activation.IDENTITY)
+                .withLearningRate(RATE)
+                .withRegularization(Regularization.none().withWeightDecay(0.1))
+                .build(1L);
+        final Model before = trainer.toModel();
+        final double[] input = {0.5, -1.0};
+        final double d = before.eval(input)[0] - 2.0;
+        trainer.train(input, new double[]{2.0}, false);
+        final Model after = trainer.toModel();
+        assertEquals(before.bias[1][0] - RATE * d, after.bias[1][0], 1e-12);
+        for (int i = 0; i < 2; i++) {
+            assertEquals(before.weights[1][i] * (1.0 - RATE * 0.1) - RATE * d * input[i], after.weights[1][i], 1e-12);
+        }
+    }
+
+    /**
+     * clipping above the gradient norm does not change the update
+     */
+    @Test
+    public void testInactiveClipping() throws Exception {
+        final Trainer plain = builder(Regularization.none()).build(1L);
+        final Trainer clipped = builder(Regularization.none().withGradientClipping(1e9)).build(1L);
+        final double[] input = {0.3, -0.2, 0.9};
+        final double[] expected = {1.0, -1.0};
+        for (int i = 0; i < 10; i++) {
+            plain.train(input, expected, false);
+            clipped.train(input, expected, false);
+        }
+        assertModelEquals(plain.toModel(), clipped.toModel(), 1e-12);
+    }
+
+    /**
+     * per sample and mini-batch updates are scaled down to the maximum gradient norm
+     */
+    @Test
+    public void testClipping() throws Exception {
+        final double[][] inputs = {{0.3, -0.2, 0.9}, {1, 1, 1}, {0, 0.5, 0}, {-1, 0, 1}};
+        final double[][] expected = {{10, -10}, {5, 5}, {-3, 2}, {0, 8}};
+        for (int batchSize : new int[]{1, 4}) {
+            final Trainer trainer = builder(Regularization.none().withGradientClipping(0.01))
+                    .withBatchSize(batchSize)
+                    .build(1L);
+            final Model before = trainer.toModel();
+            if (batchSize == 1) {
+                trainer.train(inputs[0], expected[0], false);
+            } else {
+                trainer.train(inputs, expected, false);
+            }
+            assertEquals(RATE * 0.01, Math.sqrt(squaredDistance(before, trainer.toModel())), 1e-9);
+        }
+    }
+
+    /**
+     * the corrected single pass update equals clipping before the update
+     */
+    @Test
+    public void testClippingCorrection() throws Exception {
+        final Regularization regularization = Regularization.none().withGradientClipping(0.05).withWeightDecay(0.1);
+        final Trainer fused = builder(regularization).build(1L);
+        // zero momentum is plain gradient descent without the fused kernel
+        final Trainer separate = builder(regularization).withOptimizer(Optimizer.momentum(0.0)).build(1L);
+        final double[][] inputs = {{0.3, -0.2, 0.9}, {1, 1, 1}, {0, 0.5, 0}, {-1, 0, 1}};
+        final double[][] expected = {{10, -10}, {0.1, 0.1}, {-3, 2}, {0, 8}};
+        for (int i = 0; i < 20; i++) {
+            fused.train(inputs[i % 4], expected[i % 4], false);
+            separate.train(inputs[i % 4], expected[i % 4], false);
+        }
+        assertModelEquals(separate.toModel(), fused.toModel(), 1e-12);
+    }
+
+    /**
+     * dropped hidden units neither pass values nor receive updates
+     */
+    @Test
+    public void testDropout() throws Exception {
+        final Trainer trainer = Trainer.builder(3, 2)
+                .addHiddenLayer(16)
+                .withLearningRate(RATE)
+                .withRegularization(Regularization.none().withDropout(0.5))
+                .build(1L);
+        final Model before = trainer.toModel();
+        trainer.train(new double[]{0.3, -0.2, 0.9}, new double[]{1.0, 0.0}, false);
+        final Model after = trainer.toModel();
+        final double[] hidden = trainer.values(1);
+        int dropped = 0;
+        for (int i = 0; i < 16; i++) {
+            final boolean drop = hidden[i] == 0.0;
+            dropped += drop ? 1 : 0;
+            for (int k = 0; k < 3; k++) {
+                assertEquals(drop, before.weights[1][i * 3 + k] == after.weights[1][i * 3 + k]);
+            }
+            for (int j = 0; j < 2; j++) {
+                assertEquals(drop, before.weights[2][j * 16 + i] == after.weights[2][j * 16 + i]);
+            }
+        }
+        assertTrue(dropped > 0 && dropped < 16);
+        // evaluation is not affected by dropout
+        final double[] input = {0.1, 0.2, 0.3};
+        assertArrayEquals(after.eval(input), trainer.eval(input, false), 1e-12);
+    }
+
+    /**
+     * dropout in mini-batches is reproducible with the same seed
+     */
+    @Test
+    public void testBatchDropout() throws Exception {
+        final Model[] models = new Model[2];
+        for (int m = 0; m < models.length; m++) {
+            final Trainer trainer = builder(Regularization.none().withDropout(0.3))
+                    .withBatchSize(4)
+                    .withWorkers(1)
+                    .build(1L);
+            for (int i = 0; i < 10; i++) {
+                trainer.train(new double[][]{{0.3, -0.2, 0.9}, {1, 1, 1}, {0, 0.5, 0}, {-1, 0, 1}},
+                        new double[][]{{1, -1}, {0, 1}, {1, 0}, {0, 0}}, false);
+            }
+            models[m] = trainer.toModel();
+        }
+        assertModelEquals(models[0], models[1], 0.0);
+    }
+
+    /**
+     * invalid parameters are rejected
+     */
+    @Test
+    public void testInvalid() throws Exception {
+        try {
+            Regularization.none().withDropout(1.0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            Regularization.none().withWeightDecay(-1.0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            Regularization.none().withGradientClipping(0.0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static double squaredDistance(Model a, Model b) {
+        double sum = 0.0;
+        for (int l = 1; l < a.sizes.length; l++) {
+            for (int i = 0; i < a.bias[l].length; i++) {
+                sum += Math.pow(a.bias[l][i] - b.bias[l][i], 2.0);
+            }
+            for (int i = 0; i < a.weights[l].length; i++) {
+                sum += Math.pow(a.weights[l][i] - b.weights[l][i], 2.0);
+            }
+        }
+        return sum;
+    }
+
+    private static void assertModelEquals(Model expected, Model actual, double delta) {
+        for (int l = 1; l < expected.sizes.length; l++) {
+            assertArrayEquals(expected.bias[l], actual.bias[l], delta);
+            assertArrayEquals(expected.weights[l], actual.weights[l], delta);
+        }
+    }
+}
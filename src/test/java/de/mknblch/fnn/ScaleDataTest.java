@@ -30,4 +30,10 @@ public class ScaleDataTest {
         assertArrayEquals(e1, doubles, 0.1);
     }
 
+    @Test
+    public void testConstant() throws Exception {
+        final double[] doubles = ScaleData.scaleToNew(new double[]{3, 3, 3}, -1, 1);
+        assertArrayEquals(new double[]{-1, -1, -1}, doubles, 0.0);
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,114 @@
+package de.mknblch.fnn;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author mknblch
+ */
+public class ScalerTest {
+
+    // more rows than a single chunk
+    private static final int ROWS = 5000;
+
+    /**
+     * min-max scaling maps each column onto the range
+     */
+    @Test
+    public void testMinMax() throws Exception {
+        final FlatDataSet data = data();
+        final Scaler scaler = Scaler.fitMinMax(data, -1.0, 1.0);
+        assertEquals(3, scaler.size());
+        assertSame(data, scaler.applyInPlace(data));
+        final double[] inputs = data.inputBuffer();
+        for (int c = 0; c < 2; c++) {
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            for (int r = 0; r < ROWS; r++) {
+                min = Math.min(min, inputs[r * 3 + c]);
+                max = Math.max(max, inputs[r * 3 + c]);
+            }
+            assertEquals(-1.0, min, 1e-12);
+            assertEquals(1.0, max, 1e-12);
+        }
+        // constant column
+        for (int r = 0; r < ROWS; r++) {
+            assertEquals(-1.0, inputs[r * 3 + 2], 0.0);
+        }
+    }
+
+    /**
+     * applying the scaler to a data set leaves the source unchanged
+     */
+    @Test
+    public void testCopy() throws Exception {
+        final FlatDataSet data = data();
+        final double[] before = data.inputBuffer().clone();
+        final FlatDataSet scaled = Scaler.fitMinMax(data, -1.0, 1.0).apply(data);
+        assertNotSame(data, scaled);
+        assertArrayEquals(before, data.inputBuffer(), 0.0);
+        assertArrayEquals(Scaler.fitMinMax(data, -1.0, 1.0).applyInPlace(data).inputBuffer(), scaled.inputBuffer(), 0.0);
+    }
+
+    /**
+     * z-score scaling yields mean 0 and standard deviation 1
+     */
+    @Test
+    public void testZScore() throws Exception {
+        final FlatDataSet data = Scaler.fitZScore(data()).apply(data());
+        final double[] inputs = data.inputBuffer();
+        for (int c = 0; c < 2; c++) {
+            double sum = 0.0;
+            double squares = 0.0;
+            for (int r = 0; r < ROWS; r++) {
+                sum += inputs[r * 3 + c];
+                squares += inputs[r * 3 + c] * inputs[r * 3 + c];
+            }
+            assertEquals(0.0, sum / ROWS, 1e-9);
+            assertEquals(1.0, squares / ROWS, 1e-9);
+        }
+        assertEquals(0.0, inputs[2], 0.0);
+    }
+
+    /**
+     * parallel chunked statistics equal the streaming statistics
+     */
+    @Test
+    public void testStatistics() throws Exception {
+        final FlatDataSet flat = data();
+        final DataSet streamed = DataSet.fromArray(flat.inputs(), flat.expected());
+        final Scaler.Statistics parallel = Scaler.Statistics.of(flat);
+        final Scaler.Statistics sequential = Scaler.Statistics.of(streamed);
+        assertEquals(sequential.count, parallel.count);
+        assertArrayEquals(sequential.min, parallel.min, 0.0);
+        assertArrayEquals(sequential.max, parallel.max, 0.0);
+        assertArrayEquals(sequential.mean, parallel.mean, 1e-9);
+        assertArrayEquals(sequential.m2, parallel.m2, 1e-6);
+    }
+
+    /**
+     * a fitted scaler applies the parameters of the training data to other values
+     */
+    @Test
+    public void testApplyFitted() throws Exception {
+        final DataSet train = DataSet.fromArray(
+                new double[][]{{0.0, 10.0}, {2.0, 20.0}},
+                new double[][]{{0.0}, {1.0}});
+        final Scaler scaler = Scaler.fitMinMax(train, 0.0, 1.0);
+        assertArrayEquals(new double[]{0.5, 1.5}, scaler.apply(new double[]{1.0, 25.0}), 1e-12);
+    }
+
+    private static FlatDataSet data() {
+        final Random random = new Random(42L);
+        final double[] inputs = new double[ROWS * 3];
+        for (int r = 0; r < ROWS; r++) {
+            inputs[r * 3] = random.nextDouble() * 100.0 - 20.0;
+            inputs[r * 3 + 1] = random.nextGaussian() * 3.0 + 7.0;
+            inputs[r * 3 + 2] = 5.0;
+        }
+        return FlatDataSet.wrap(inputs, new double[ROWS], 3, 1);
+    }
+}
@@ -0,0 +1,158 @@
+package de.mknblch.fnn;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author mknblch
+ */
+public class ScoringEngineTest {
+
+    // number of load generating threads
+    private static final int CLIENTS = 4;
+    // requests per client
+    private static final int REQUESTS = 500;
+
+    private static Model model() {
+        return Trainer.builder(8, 3)
+                .addHiddenLayer(16, Activation.TANH)
+                .build(42L)
+                .toModel();
+    }
+
+    /**
+     * concurrent clients get the same results as a direct evaluation
+     */
+    @Test
+    public void testLoad() throws Exception {
+        final Model model = model();
+        final ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try (ScoringEngine engine = ScoringEngine.builder(model)
+                .withMaxBatchSize(16)
+                .withMaxWait(1, TimeUnit.MILLISECONDS)
+                .withWorkers(2)
+                .build()) {
+            final List<Future<?>> done = new ArrayList<>();
+            for (int c = 0; c < CLIENTS; c++) {
+                final long seed = c;
+                done.add(clients.submit(() -> {
+                    final Random random = new Random(seed);
+                    final List<double[]> inputs = new ArrayList<>();
+                    final List<CompletableFuture<double[]>> outputs = new ArrayList<>();
+                    for (int r = 0; r < REQUESTS; r++) {
+                        final double[] input = new double[8];
+                        for (int i = 0; i < input.length; i++) {
+                            input[i] = random.nextDouble() * 2.0 - 1.0;
+                        }
+                        inputs.add(input);
+                        outputs.add(engine.submit(input));
+                    }
+                    for (int r = 0; r < REQUESTS; r++) {
+                        assertArrayEquals(model.eval(inputs.get(r)), outputs.get(r).join(), 1e-12);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : done) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+            final ScoringEngine.Stats stats = engine.stats();
+            assertEquals(stats.toString(), CLIENTS * REQUESTS, stats.requests());
+            assertTrue(stats.toString(), stats.batches() > 0 && stats.batches() <= stats.requests());
+            assertTrue(stats.toString(), stats.meanBatchSize() >= 1.0 && stats.meanBatchSize() <= 16.0);
+            assertTrue(stats.toString(), stats.p50Nanos() > 0 && stats.p50Nanos() <= stats.p99Nanos());
+            assertTrue(stats.toString(), stats.throughput() > 0.0);
+        } finally {
+            clients.shutdown();
+        }
+    }
+
+    /**
+     * a single request is scored after the wait time without filling the batch
+     */
+    @Test
+    public void testMaxWait() throws Exception {
+        final Model model = model();
+        try (ScoringEngine engine = ScoringEngine.builder(model)
+                .withMaxBatchSize(1024)
+                .withMaxWait(5, TimeUnit.MILLISECONDS)
+                .withWorkers(1)
+                .build()) {
+            final double[] input = new double[8];
+            assertArrayEquals(model.eval(input), engine.submit(input).get(5, TimeUnit.SECONDS), 1e-12);
+            assertEquals(1, engine.stats().batches());
+        }
+    }
+
+    /**
+     * errors of the predictor fail the batch without stopping the worker
+     */
+    @Test
+    public void testError() throws Exception {
+        final Model model = model();
+        final boolean[] failed = {false};
+        final Predictor failing = new Predictor() {
+            @Override
+            public int inputSize() {
+                return model.inputSize();
+            }
+
+            @Override
+            public int outputSize() {
+                return model.outputSize();
+            }
+
+            @Override
+            public double[] eval(double[] input, double[] output) {
+                if (!failed[0]) {
+                    failed[0] = true;
+                    throw new AssertionError("failed");
+                }
+                return model.eval(input, output);
+            }
+        };
+        try (ScoringEngine engine = ScoringEngine.builder(failing).withWorkers(1).build()) {
+            final double[] input = new double[8];
+            try {
+                engine.submit(input).get(5, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof AssertionError);
+            }
+            assertArrayEquals(model.eval(input), engine.submit(input).get(5, TimeUnit.SECONDS), 1e-12);
+        }
+    }
+
+    /**
+     * requests are rejected after close and must match the input size
+     */
+    @Test
+    public void testRejected() throws Exception {
+        final ScoringEngine engine = ScoringEngine.builder(model()).withWorkers(1).build();
+        engine.close();
+        try {
+            engine.submit(new double[8]).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        try {
+            engine.submit(new double[7]);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package de.mknblch.fnn;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author mknblch
+ */
+public class SparseVectorTest {
+
+    private static final int INPUTS = 500;
+
+    /**
+     * conversion between dense and sparse values
+     */
+    @Test
+    public void testConversion() throws Exception {
+        final double[] dense = {0.0, 2.0, 0.0, 0.0, -1.0};
+        final SparseVector sparse = SparseVector.of(dense);
+        assertEquals(5, sparse.size());
+        assertEquals(2, sparse.nnz());
+        assertEquals(4, sparse.index(1));
+        assertEquals(-1.0, sparse.value(1), 0.0);
+        assertArrayEquals(dense, sparse.toDense(), 0.0);
+    }
+
+    /**
+     * indices must be ascending and in range
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidIndices() throws Exception {
+        SparseVector.of(5, new int[]{3, 1}, new double[]{1.0, 1.0});
+    }
+
+    /**
+     * sparse evaluation equals dense evaluation
+     */
+    @Test
+    public void testEval() throws Exception {
+        final Trainer trainer = builder().build(TrainerTest.RANDOM_SEED);
+        final Model model = trainer.toModel();
+        final Random random = new Random(42L);
+        for (int i = 0; i < 10; i++) {
+            final SparseVector input = input(random);
+            final double[] expected = trainer.eval(input.toDense()).clone();
+            assertArrayEquals(expected, trainer.eval(input), 1e-12);
+            assertArrayEquals(expected, model.eval(input, new double[2]), 1e-12);
+        }
+    }
+
+    /**
+     * sparse training equals dense training
+     */
+    @Test
+    public void testTrain() throws Exception {
+        final Trainer dense = builder().build(TrainerTest.RANDOM_SEED);
+        final Trainer sparse = builder().build(TrainerTest.RANDOM_SEED);
+        TrainerTest.copyWeights(dense, sparse);
+        final Random random = new Random(42L);
+        for (int i = 0; i < 20; i++) {
+            final SparseVector input = input(random);
+            final double[] expected = {i % 2, 1 - i % 2};
+            assertEquals(
+                    dense.train(input.toDense(), expected, false),
+                    sparse.train(input, expected, false),
+                    1e-12);
+        }
+        TrainerTest.assertSameWeights(dense, sparse);
+    }
+
+    /**
+     * sparse training reports its gradient norm
+     */
+    @Test
+    public void testTrainInstrumented() throws Exception {
+        final TrainingMetrics denseMetrics = new TrainingMetrics();
+        final TrainingMetrics sparseMetrics = new TrainingMetrics();
+        final Trainer dense = builder().withListener(denseMetrics).build(TrainerTest.RANDOM_SEED);
+        final Trainer sparse = builder().withListener(sparseMetrics).build(TrainerTest.RANDOM_SEED);
+        TrainerTest.copyWeights(dense, sparse);
+        final SparseVector input = input(new Random(42L));
+        dense.train(input.toDense(), new double[]{1.0, 0.0}, false);
+        sparse.train(input, new double[]{1.0, 0.0}, false);
+        assertEquals(denseMetrics.gradientNorm(), sparseMetrics.gradientNorm(), 1e-12);
+    }
+
+    private static Trainer.Builder builder() {
+        return Trainer.builder(INPUTS, 2)
+                .withLearningRate(0.5)
+                .addHiddenLayer(16, Activation.TANH);
+    }
+
+    private static SparseVector input(Random random) {
+        final int[] indices = random.ints(0, INPUTS).distinct().limit(5).sorted().toArray();
+        final double[] values = new double[indices.length];
+        for (int k = 0; k < values.length; k++) {
+            values[k] = random.nextDouble();
+        }
+        return SparseVector.of(INPUTS, indices, values);
+    }
+}
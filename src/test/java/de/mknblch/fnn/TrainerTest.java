@@ -0,0 +1,147 @@
+package de.mknblch.fnn;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static de.mknblch.fnn.TestData.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author mknblch
+ */
+public class TrainerTest {
+
+    public static final long RANDOM_SEED = 42L;
+
+    // number of tasks submitted to the pool
+    private static final AtomicInteger INVOCATIONS = new AtomicInteger();
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4) {
+        @Override
+        public <T> T invoke(ForkJoinTask<T> task) {
+            INVOCATIONS.incrementAndGet();
+            return super.invoke(task);
+        }
+    };
+
+    // splits even the tiny networks of the tests
+    private static final ExecutionPolicy POLICY = ExecutionPolicy.of(POOL).withThreshold(1);
+
+    @Before
+    public void reset() throws Exception {
+        INVOCATIONS.set(0);
+    }
+
+    @AfterClass
+    public static void shutdown() throws Exception {
+        POOL.shutdown();
+    }
+
+    /**
+     * splitting a mini-batch across workers yields the same update
+     */
+    @Test
+    public void testParallelMiniBatch() throws Exception {
+        final Trainer sequential = builder().withBatchSize(4).withWorkers(4).build(RANDOM_SEED);
+        final Trainer parallel = builder().withBatchSize(4).withWorkers(4)
+                .withExecutionPolicy(POLICY)
+                .build(RANDOM_SEED);
+        copyWeights(sequential, parallel);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(
+                    sequential.train(XOR.inputs(), XOR.expected(), false),
+                    parallel.train(XOR.inputs(), XOR.expected(), true),
+                    1e-12);
+        }
+        assertSameWeights(sequential, parallel);
+        assertTrue(INVOCATIONS.get() > 0);
+    }
+
+    /**
+     * a mini-batch of one sample equals a per-sample update
+     */
+    @Test
+    public void testSingleSampleBatch() throws Exception {
+        final Trainer sgd = builder().build(RANDOM_SEED);
+        final Trainer batch = builder().withBatchSize(2).build(RANDOM_SEED);
+        copyWeights(sgd, batch);
+        for (int i = 0; i < INPUTS.length; i++) {
+            sgd.train(new double[][]{INPUTS[i]}, new double[][]{XOR.expected()[i]}, false);
+            batch.train(new double[][]{INPUTS[i]}, new double[][]{XOR.expected()[i]}, false);
+        }
+        assertSameWeights(sgd, batch);
+    }
+
+    /**
+     * mini-batch training converges
+     */
+    @Test
+    public void testMiniBatchConverges() throws Exception {
+        final Trainer trainer = Trainer.builder(2, 1)
+                .addHiddenLayer(8)
+                .withLearningRate(2.0)
+                .withBatchSize(2)
+                .withWorkers(2)
+                .build(RANDOM_SEED)
+                .train(XOR, 0.01, 10_000, true);
+        FNNTest.assertClassify(trainer, XOR);
+    }
+
+    /**
+     * the fused update equals the separate backward and update passes
+     */
+    @Test
+    public void testFusedUpdate() throws Exception {
+        final Trainer fused = wide().build(RANDOM_SEED);
+        // zero momentum is plain gradient descent without the fused kernel
+        final Trainer separate = wide().withOptimizer(Optimizer.momentum(0.0)).build(RANDOM_SEED);
+        final Trainer parallel = wide().withExecutionPolicy(POLICY).build(RANDOM_SEED);
+        copyWeights(fused, separate);
+        copyWeights(fused, parallel);
+        final double[][] inputs = new double[4][200];
+        for (int i = 0; i < inputs.length; i++) {
+            System.arraycopy(INPUTS[i], 0, inputs[i], 0, 2);
+            inputs[i][199] = 1.0;
+        }
+        for (int i = 0; i < 10; i++) {
+            fused.train(inputs, XOR.expected(), false);
+            separate.train(inputs, XOR.expected(), false);
+            parallel.train(inputs, XOR.expected(), true);
+        }
+        assertSameWeights(fused, separate);
+        assertSameWeights(fused, parallel);
+        assertTrue(INVOCATIONS.get() > 0);
+    }
+
+    private static Trainer.Builder wide() {
+        return Trainer.builder(200, 1)
+                .withLearningRate(0.5)
+                .addHiddenLayer(150, Activation.TANH)
+                .addHiddenLayer(3);
+    }
+
+    private static Trainer.Builder builder() {
+        return Trainer.builder(2, 1)
+                .withLearningRate(0.75)
+                .addHiddenLayer(3);
+    }
+
+    static void copyWeights(FNN source, FNN target) {
+        for (int l = 1; l < source.layers.length; l++) {
+            System.arraycopy(source.layers[l].weights, 0, target.layers[l].weights, 0, source.layers[l].weights.length);
+            System.arraycopy(source.layers[l].bias, 0, target.layers[l].bias, 0, source.layers[l].bias.length);
+        }
+    }
+
+    static void assertSameWeights(FNN expected, FNN actual) {
+        for (int l = 1; l < expected.layers.length; l++) {
+            assertArrayEquals(expected.layers[l].weights, actual.layers[l].weights, 1e-12);
+            assertArrayEquals(expected.layers[l].bias, actual.layers[l].bias, 1e-12);
+        }
+    }
+}
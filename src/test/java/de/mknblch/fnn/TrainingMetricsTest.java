@@ -0,0 +1,75 @@
+package de.mknblch.fnn;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static de.mknblch.fnn.TestData.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author mknblch
+ */
+public class TrainingMetricsTest {
+
+    /**
+     * per-sample training reports each sample as a batch
+     */
+    @Test
+    public void testPerSample() throws Exception {
+        final TrainingMetrics metrics = new TrainingMetrics();
+        final Trainer trainer = builder().withListener(metrics).build(TrainerTest.RANDOM_SEED);
+        for (int i = 0; i < 10; i++) {
+            trainer.train(XOR, false);
+        }
+        final Map<String, Number> snapshot = metrics.snapshot();
+        assertEquals(10L, snapshot.get("fnn.train.epochs"));
+        assertEquals(40L, snapshot.get("fnn.train.batches"));
+        assertEquals(40L, snapshot.get("fnn.train.samples"));
+        assertTrue(snapshot.get("fnn.train.allocated.bytes").longValue() >= 0L);
+        assertFalse(Double.isNaN(metrics.error()));
+        assertTrue(metrics.gradientNorm() > 0.0);
+        assertTrue(metrics.samplesPerSecond() > 0.0);
+    }
+
+    /**
+     * mini-batch training reports one batch per update
+     */
+    @Test
+    public void testMiniBatch() throws Exception {
+        final TrainingMetrics metrics = new TrainingMetrics("xor");
+        final Trainer trainer = builder().withBatchSize(2).withWorkers(2).withListener(metrics).build(TrainerTest.RANDOM_SEED);
+        for (int i = 0; i < 10; i++) {
+            trainer.train(XOR, true);
+        }
+        final Map<String, Number> snapshot = metrics.snapshot();
+        assertEquals(10L, snapshot.get("xor.epochs"));
+        assertEquals(20L, snapshot.get("xor.batches"));
+        assertTrue(snapshot.get("xor.forward.nanos").longValue() > 0L);
+        assertTrue(snapshot.get("xor.backward.nanos").longValue() > 0L);
+        assertTrue(metrics.gradientNorm() > 0.0);
+    }
+
+    /**
+     * the gradient norm derived in per-sample mode equals the norm of the materialized gradient
+     */
+    @Test
+    public void testGradientNorm() throws Exception {
+        final TrainingMetrics sgdMetrics = new TrainingMetrics();
+        final TrainingMetrics batchMetrics = new TrainingMetrics();
+        final Trainer sgd = builder().withListener(sgdMetrics).build(TrainerTest.RANDOM_SEED);
+        final Trainer batch = builder().withBatchSize(2).withListener(batchMetrics).build(TrainerTest.RANDOM_SEED);
+        TrainerTest.copyWeights(sgd, batch);
+        for (int i = 0; i < INPUTS.length; i++) {
+            sgd.train(new double[][]{INPUTS[i]}, new double[][]{XOR.expected()[i]}, false);
+            batch.train(new double[][]{INPUTS[i]}, new double[][]{XOR.expected()[i]}, false);
+            assertEquals(batchMetrics.gradientNorm(), sgdMetrics.gradientNorm(), 1e-12);
+        }
+    }
+
+    private static Trainer.Builder builder() {
+        return Trainer.builder(2, 1)
+                .withLearningRate(0.75)
+                .addHiddenLayer(3);
+    }
+}
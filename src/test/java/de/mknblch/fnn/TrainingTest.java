@@ -0,0 +1,170 @@
+package de.mknblch.fnn;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+
+import static de.mknblch.fnn.TestData.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author mknblch
+ */
+public class TrainingTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * training converges on an easy data set
+     */
+    @Test
+    public void testConverge() throws Exception {
+        final Trainer trainer = Trainer.builder(2, 1)
+                .withLearningRate(0.5)
+                .build(TrainerTest.RANDOM_SEED);
+        final Training.Result result = Training.of(trainer).run(OR, 0.01, 10_000);
+        assertEquals(result.toString(), Training.Outcome.CONVERGED, result.outcome());
+        assertTrue(result.converged());
+        assertEquals(result.epochs(), result.bestEpoch());
+        FNNTest.assertClassify(trainer, OR);
+    }
+
+    /**
+     * a validation error which gets worse stops the training after
+     * the patience and restores the best weights
+     */
+    @Test
+    public void testPatience() throws Exception {
+        final Trainer trainer = Trainer.builder(2, 1)
+                .addHiddenLayer(8)
+                .withLearningRate(2.0)
+                .build(TrainerTest.RANDOM_SEED);
+        // EQ is the negation of XOR
+        final Training.Result result = Training.of(trainer)
+                .withValidation(EQ)
+                .withPatience(5)
+                .run(XOR, 0.0, 10_000);
+        assertEquals(result.toString(), Training.Outcome.STOPPED, result.outcome());
+        assertEquals(result.bestEpoch() + 5, result.epochs());
+        assertEquals(result.bestError(), trainer.error(EQ), 1e-12);
+    }
+
+    /**
+     * a diverging training stops immediately
+     */
+    @Test
+    public void testDiverge() throws Exception {
+        final Trainer trainer = Trainer.builder(2, 1)
+                .addHiddenLayer(4, Activation.IDENTITY)
+                .withOutputActivation(Activation.IDENTITY)
+                .withLearningRate(1e6)
+                .build(TrainerTest.RANDOM_SEED);
+        final Training.Result result = Training.of(trainer).run(XOR, 0.0, 10_000);
+        assertEquals(result.toString(), Training.Outcome.DIVERGED, result.outcome());
+        assertTrue(result.epochs() < 1_000);
+        assertEquals(1e6, trainer.getLearningRate(), 0.0);
+    }
+
+    /**
+     * the initial weights are restored if already the first epoch diverges
+     */
+    @Test
+    public void testDivergeFirstEpoch() throws Exception {
+        final Trainer trainer = Trainer.builder(2, 1)
+                .addHiddenLayer(4, Activation.IDENTITY)
+                .withOutputActivation(Activation.IDENTITY)
+                .withLearningRate(1e300)
+                .build(TrainerTest.RANDOM_SEED);
+        final Model initial = trainer.toModel();
+        final Training.Result result = Training.of(trainer).run(XOR, 0.0, 10_000);
+        assertEquals(result.toString(), Training.Outcome.DIVERGED, result.outcome());
+        assertEquals(1, result.epochs());
+        assertEquals(-1, result.bestEpoch());
+        for (double[] input : INPUTS) {
+            assertArrayEquals(initial.eval(input), trainer.toModel().eval(input), 0.0);
+        }
+    }
+
+    /**
+     * the last rows are held out for validation
+     */
+    @Test
+    public void testValidationSplit() throws Exception {
+        final double[][] inputs = new double[40][];
+        final double[][] expected = new double[40][];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = INPUTS[i % 4];
+            expected[i] = OR.expected()[i % 4];
+        }
+        final Trainer trainer = Trainer.builder(2, 1)
+                .withLearningRate(0.5)
+                .build(TrainerTest.RANDOM_SEED);
+        final Training.Result result = Training.of(trainer)
+                .withValidationSplit(0.25)
+                .withSchedule(Schedule.exponential(0.999))
+                .run(DataSet.fromArray(inputs, expected), 0.01, 10_000);
+        assertTrue(result.toString(), result.converged());
+        assertEquals(0.5, trainer.getLearningRate(), 0.0);
+    }
+
+    /**
+     * a flat data set is split without copying its arrays
+     */
+    @Test
+    public void testValidationSplitFlat() throws Exception {
+        final double[][] inputs = new double[40][];
+        final double[][] expected = new double[40][];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = INPUTS[i % 4];
+            expected[i] = OR.expected()[i % 4];
+        }
+        final Trainer trainer = Trainer.builder(2, 1)
+                .withLearningRate(0.5)
+                .build(TrainerTest.RANDOM_SEED);
+        final Training.Result result = Training.of(trainer)
+                .withValidationSplit(0.25)
+                .withSchedule(Schedule.exponential(0.999))
+                .run(FlatDataSet.copyOf(DataSet.fromArray(inputs, expected)), 0.01, 10_000);
+        assertTrue(result.toString(), result.converged());
+    }
+
+    /**
+     * a streaming data set is split without loading it into the heap
+     */
+    @Test
+    public void testValidationSplitFile() throws Exception {
+        final double[][] inputs = new double[40][];
+        final double[][] expected = new double[40][];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = INPUTS[i % 4];
+            expected[i] = OR.expected()[i % 4];
+        }
+        final Path path = folder.newFile().toPath();
+        FileDataSet.write(DataSet.fromArray(inputs, expected), path);
+        final Trainer trainer = Trainer.builder(2, 1)
+                .withLearningRate(0.5)
+                .build(TrainerTest.RANDOM_SEED);
+        final Training.Result result = Training.of(trainer)
+                .withValidationSplit(0.25)
+                .withSchedule(Schedule.exponential(0.999))
+                .run(FileDataSet.open(path, 7), 0.01, 10_000);
+        assertTrue(result.toString(), result.converged());
+    }
+
+    /**
+     * learning rate schedules
+     */
+    @Test
+    public void testSchedules() throws Exception {
+        assertEquals(0.1, Schedule.constant().rate(0.1, 100), 0.0);
+        assertEquals(0.1, Schedule.step(10, 0.5).rate(0.1, 9), 1e-12);
+        assertEquals(0.05, Schedule.step(10, 0.5).rate(0.1, 10), 1e-12);
+        assertEquals(0.025, Schedule.exponential(0.5).rate(0.1, 2), 1e-12);
+        assertEquals(0.1, Schedule.cosine(10, 0.0).rate(0.1, 0), 1e-12);
+        assertEquals(0.05, Schedule.cosine(10, 0.0).rate(0.1, 5), 1e-12);
+        assertEquals(0.01, Schedule.cosine(10, 0.01).rate(0.1, 20), 1e-12);
+    }
+}